@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer;
+import de.marcelsauer.tokenreplacer.ParseException;
+
+/**
+ * splitting the arguments of a single token, e.g. (a0,a1,a2,a3), compared to
+ * the former regex validation and {@link String#split(String)}. run with the
+ * gc profiler (see {@link BenchmarkMain}) and compare gc.alloc.rate.norm, the
+ * bytes allocated per token.
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ArgumentParsingBenchmark {
+
+	@Param({ "0", "1", "4", "16" })
+	int argumentCount;
+
+	private final ArgumentParser parser = new ArgumentParser();
+	private final StringBuilder args = new StringBuilder();
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < this.argumentCount; i++) {
+			this.args.append(i == 0 ? "" : ",").append('a').append(i);
+		}
+	}
+
+	@Benchmark
+	public String[] extractArgs() {
+		return this.parser.extractArgs("args", this.args);
+	}
+
+	@Benchmark
+	public String[] regexAndSplit() {
+		if (this.args.length() == 0) {
+			return new String[] {};
+		}
+		if (this.args.toString().matches("^,.*") || this.args.toString().matches(".*,$")) {
+			throw new ParseException("invalid arguments");
+		}
+		return this.args.toString().split(",");
+	}
+
+	/**
+	 * makes the argument parsing of the replacer accessible
+	 */
+	static final class ArgumentParser extends FiniteStateMachineTokenReplacer {
+
+		@Override
+		public String[] extractArgs(String tokenName, StringBuilder args) {
+			return super.extractArgs(tokenName, args);
+		}
+	}
+}
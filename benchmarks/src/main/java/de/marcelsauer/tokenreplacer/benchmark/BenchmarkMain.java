@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks like the standard jmh main class but always adds the
+ * {@link GCProfiler} so allocation per operation is reported next to the
+ * throughput. accepts all the usual jmh command line options.
+ * 
+ * @author msauer
+ */
+public final class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		Runner runner = new Runner(cmdOptions);
+		if (cmdOptions.shouldHelp()) {
+			cmdOptions.showHelp();
+			return;
+		}
+		if (cmdOptions.shouldList()) {
+			runner.list();
+			return;
+		}
+		Options options = new OptionsBuilder().parent(cmdOptions).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
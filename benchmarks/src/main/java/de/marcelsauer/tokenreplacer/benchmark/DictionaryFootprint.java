@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import de.marcelsauer.tokenreplacer.CompactDictionary;
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * compares the heap used by a large number of static tokens registered as
+ * {@link de.marcelsauer.tokenreplacer.Token}s with the same tokens kept in a
+ * {@link CompactDictionary} on and off the heap. run it with
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar de.marcelsauer.tokenreplacer.benchmark.DictionaryFootprint [entries]
+ * </pre>
+ * 
+ * @author msauer
+ */
+public final class DictionaryFootprint {
+
+	public static void main(String[] args) {
+		final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		System.out.printf("%d tokens like token123456 = value123456%n", entries);
+
+		long before = usedHeap();
+		TokenReplacer toky = new Toky();
+		for (int i = 0; i < entries; i++) {
+			toky.register("token" + i, "value" + i);
+		}
+		report("registered tokens", usedHeap() - before, entries, toky.substitute("{token1}"));
+		toky = null;
+
+		for (boolean offHeap : new boolean[] { false, true }) {
+			before = usedHeap();
+			CompactDictionary dictionary = new CompactDictionary(entries, offHeap);
+			for (int i = 0; i < entries; i++) {
+				dictionary.put("token" + i, "value" + i);
+			}
+			report(offHeap ? "dictionary off-heap" : "dictionary on heap", usedHeap() - before, entries,
+					new Toky().withDictionary(dictionary).substitute("{token1}"));
+			System.out.printf("%-20s %,14d bytes allocated in total%n", "", dictionary.getFootprint());
+			dictionary = null;
+		}
+	}
+
+	private static void report(String name, long bytes, int entries, String check) {
+		System.out.printf("%-20s %,14d bytes on the heap, %6.1f per token (%s)%n", name, bytes, (double) bytes / entries,
+				check);
+	}
+
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// repeated until nothing more is collected
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			final long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used) {
+				break;
+			}
+			used = now;
+		}
+		return used;
+	}
+
+	private DictionaryFootprint() {
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.marcelsauer.tokenreplacer.Generator;
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * substitution of generator tokens with a growing number of arguments, e.g.
+ * {args(a0,a1,a2,a3)}
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeneratorArgumentsBenchmark {
+
+	@Param({ "0", "1", "4", "16" })
+	int argumentCount;
+
+	private TokenReplacer toky;
+	private String template;
+
+	@Setup
+	public void setUp() {
+		this.toky = new Toky().register("args", new Generator() {
+
+			private String[] args;
+
+			@Override
+			public void inject(String[] args) {
+				this.args = args;
+			}
+
+			@Override
+			public String generate() {
+				return this.args.length == 0 ? "" : this.args[0];
+			}
+		});
+		StringBuilder token = new StringBuilder("{args");
+		if (this.argumentCount > 0) {
+			token.append('(');
+			for (int i = 0; i < this.argumentCount; i++) {
+				token.append(i == 0 ? "" : ",").append('a').append(i);
+			}
+			token.append(')');
+		}
+		token.append('}');
+		this.template = Templates.withTokens(4096, 16, token.toString());
+	}
+
+	@Benchmark
+	public String substitute() {
+		return this.toky.substitute(this.template);
+	}
+}
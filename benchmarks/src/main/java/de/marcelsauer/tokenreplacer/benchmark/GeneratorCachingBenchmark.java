@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.marcelsauer.tokenreplacer.Generator;
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * substitution of repeated generator tokens with
+ * {@link TokenReplacer#enableGeneratorCaching()} turned on and off. the
+ * generator burns a fixed amount of cpu to simulate an expensive lookup.
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeneratorCachingBenchmark {
+
+	@Param({ "true", "false" })
+	boolean generatorCaching;
+
+	@Param({ "1", "16" })
+	int distinctTokens;
+
+	private TokenReplacer toky;
+	private String template;
+
+	@Setup
+	public void setUp() {
+		this.toky = new Toky();
+		String[] tokens = new String[this.distinctTokens];
+		for (int i = 0; i < this.distinctTokens; i++) {
+			final String value = "value" + i;
+			this.toky.register("token" + i, new Generator() {
+
+				@Override
+				public void inject(String[] args) {
+					// not relevant here
+				}
+
+				@Override
+				public String generate() {
+					Blackhole.consumeCPU(256);
+					return value;
+				}
+			});
+			tokens[i] = "{token" + i + "}";
+		}
+		if (this.generatorCaching) {
+			this.toky.enableGeneratorCaching();
+		} else {
+			this.toky.disableGeneratorCaching();
+		}
+		this.template = Templates.withTokens(4096, 16, tokens);
+	}
+
+	@Benchmark
+	public String substitute() {
+		return this.toky.substitute(this.template);
+	}
+}
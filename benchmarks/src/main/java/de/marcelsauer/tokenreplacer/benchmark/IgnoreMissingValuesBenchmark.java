@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * substitution with {@link TokenReplacer#ignoreMissingValues()} where half of
+ * the tokens have no value and are passed through as-is
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IgnoreMissingValuesBenchmark {
+
+	@Param({ "{missing}", "{missing(1,2,3)}" })
+	String missingToken;
+
+	private TokenReplacer toky;
+	private String template;
+
+	@Setup
+	public void setUp() {
+		this.toky = new Toky().register("name", "value").ignoreMissingValues();
+		this.template = Templates.withTokens(4096, 16, "{name}", this.missingToken);
+	}
+
+	@Benchmark
+	public String substitute() {
+		return this.toky.substitute(this.template);
+	}
+}
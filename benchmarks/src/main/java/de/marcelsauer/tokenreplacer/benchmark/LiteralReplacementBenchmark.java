@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * replacing plain literal keys (product codes) in a 64k text, one pass over
+ * the text with {@link TokenReplacer#substituteLiterals(String)} compared to
+ * one {@link String#replace(CharSequence, CharSequence)} per key.
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LiteralReplacementBenchmark {
+
+	private static final int TEXT_LENGTH = 64 * 1024;
+
+	@Param({ "10", "100", "1000" })
+	int keyCount;
+
+	private final TokenReplacer toky = new Toky();
+	private String[] keys;
+	private String[] values;
+	private String text;
+
+	@Setup
+	public void setUp() {
+		this.keys = new String[this.keyCount];
+		this.values = new String[this.keyCount];
+		for (int i = 0; i < this.keyCount; i++) {
+			this.keys[i] = "ACME-" + (100000 + i);
+			this.values[i] = "product " + i;
+			this.toky.register(this.keys[i], this.values[i]);
+		}
+		final Random random = new Random(42);
+		final StringBuilder text = new StringBuilder(TEXT_LENGTH);
+		while (text.length() < TEXT_LENGTH) {
+			text.append("order of ").append(this.keys[random.nextInt(this.keyCount)]).append(" shipped to ACME-HQ. ");
+		}
+		this.text = text.toString();
+	}
+
+	@Benchmark
+	public String substituteLiterals() {
+		return this.toky.substituteLiterals(this.text);
+	}
+
+	@Benchmark
+	public String stringReplacePerKey() {
+		String result = this.text;
+		for (int i = 0; i < this.keys.length; i++) {
+			result = result.replace(this.keys[i], this.values[i]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.marcelsauer.tokenreplacer.TokenReplacer;
+import de.marcelsauer.tokenreplacer.Toky;
+
+/**
+ * substitution of a set of templates that are used again and again, with and
+ * without the template cache
+ * 
+ * @author msauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TemplateCacheBenchmark {
+
+	private static final int TEMPLATES = 64;
+
+	@Param({ "256", "4096" })
+	int length;
+
+	@Param({ "false", "true" })
+	boolean cached;
+
+	private TokenReplacer toky;
+	private String[] templates;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		this.toky = new Toky().register("name", "value");
+		if (this.cached) {
+			this.toky.withTemplateCache(TEMPLATES);
+		}
+		this.templates = new String[TEMPLATES];
+		for (int i = 0; i < TEMPLATES; i++) {
+			this.templates[i] = i + Templates.withTokens(this.length, 32, "{name}");
+		}
+	}
+
+	@Benchmark
+	public String substitute() {
+		this.next = (this.next + 1) % TEMPLATES;
+		return this.toky.substitute(this.templates[this.next]);
+	}
+}
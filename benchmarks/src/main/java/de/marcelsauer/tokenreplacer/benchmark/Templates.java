@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer.benchmark;
+
+/**
+ * builds the templates used by the benchmarks
+ * 
+ * @author msauer
+ */
+final class Templates {
+
+	private static final String LOREM = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. "
+			+ "Pellentesque in sapien quis orci aliquam lacinia id quis mi. ";
+
+	/**
+	 * @return a template of (at least) the given length with the given token
+	 *         repeated after every literalCharsBetweenTokens characters of text
+	 */
+	static String withTokens(int length, int literalCharsBetweenTokens, String... tokens) {
+		StringBuilder template = new StringBuilder(length + 64);
+		int literal = 0;
+		int token = 0;
+		while (template.length() < length) {
+			for (int i = 0; i < literalCharsBetweenTokens && template.length() < length; i++) {
+				template.append(LOREM.charAt(literal++ % LOREM.length()));
+			}
+			template.append(tokens[token++ % tokens.length]);
+		}
+		return template.toString();
+	}
+
+	private Templates() {
+	}
+}
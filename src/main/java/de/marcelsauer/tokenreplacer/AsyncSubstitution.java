@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * the result of an asynchronous substitution. the literal text and the static
+ * values are known right away, the generators are already running. the
+ * result is assembled in order by the thread calling {@link #get()}, so no
+ * thread of the executor is blocked waiting for the generators (which could
+ * dead lock a small pool). nested values are expanded by that thread as
+ * well, once all values are there.
+ * 
+ * @author msauer
+ */
+final class AsyncSubstitution implements Future<String> {
+
+	private final FiniteStateMachineTokenReplacer replacer;
+	private final int inputLength;
+	private final long started = System.nanoTime();
+	// null if values are not expanded, only used while holding the lock
+	private final FiniteStateMachineTokenReplacer.NestedExpansion expansion;
+	// Strings, StaticValues and PendingValues in the order of the template
+	private final List<Object> parts = new ArrayList<Object>();
+	private volatile boolean cancelled;
+	private volatile String result;
+
+	/**
+	 * @param expansion
+	 *            null if values are not expanded
+	 */
+	AsyncSubstitution(FiniteStateMachineTokenReplacer replacer, int inputLength,
+			FiniteStateMachineTokenReplacer.NestedExpansion expansion) {
+		this.replacer = replacer;
+		this.inputLength = inputLength;
+		this.expansion = expansion;
+	}
+
+	/**
+	 * @return true if the values of tokens are expanded, see
+	 *         {@link #addValue(Token, String, String)}
+	 */
+	boolean isExpanding() {
+		return this.expansion != null;
+	}
+
+	void addText(String text) {
+		this.parts.add(text);
+	}
+
+	/**
+	 * @param key
+	 *            the token name and its arguments, see
+	 *            {@link Utils#cacheKey(String, String[])}
+	 * @param value
+	 *            the static value of the token that is expanded
+	 */
+	void addValue(Token token, String key, String value) {
+		this.parts.add(new StaticValue(token, key, value));
+	}
+
+	/**
+	 * @param key
+	 *            the token name and its arguments, null if values are not
+	 *            expanded
+	 * @param value
+	 *            the running generator of the token
+	 */
+	void addValue(Token token, String key, Future<String> value) {
+		this.parts.add(new PendingValue(token, key, value));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Future#get()
+	 */
+	@Override
+	public String get() throws InterruptedException, ExecutionException {
+		try {
+			return assemble(0);
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("there is no timeout", e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Future#get(long,
+	 * java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+			TimeoutException {
+		return assemble(System.nanoTime() + Math.max(1, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * waits for the generators without holding the lock, so every caller
+	 * gives up at its own deadline. only the first caller getting all values
+	 * expands them and publishes the result.
+	 * 
+	 * @param deadline
+	 *            the {@link System#nanoTime()} to give up at, 0 to wait as long
+	 *            as it takes
+	 */
+	private String assemble(final long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+		final String done = this.result;
+		if (done != null) {
+			return done;
+		}
+		final String[] generated = new String[this.parts.size()];
+		for (int i = 0; i < generated.length; i++) {
+			final Object part = this.parts.get(i);
+			if (part instanceof PendingValue) {
+				generated[i] = ((PendingValue) part).await(deadline);
+			}
+		}
+		synchronized (this) {
+			if (this.result == null) {
+				this.result = join(generated);
+			}
+			return this.result;
+		}
+	}
+
+	/**
+	 * @param generated
+	 *            the values of the generators at the index of their part
+	 */
+	private String join(final String[] generated) throws ExecutionException {
+		int length = 0;
+		final String[] values = new String[generated.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				final Object part = this.parts.get(i);
+				if (part instanceof PendingValue) {
+					final PendingValue pending = (PendingValue) part;
+					// a generator returning null is appended as "null"
+					values[i] = String.valueOf(expand(pending.token, pending.key, generated[i]));
+				} else if (part instanceof StaticValue) {
+					final StaticValue value = (StaticValue) part;
+					values[i] = String.valueOf(expand(value.token, value.key, value.value));
+				} else {
+					values[i] = (String) part;
+				}
+				length += values[i].length();
+			}
+		} catch (RuntimeException e) {
+			// e.g. a cycle within the values, the same as a failing generator
+			throw new ExecutionException(e);
+		}
+		final StringBuilder resultBuffer = new StringBuilder(length);
+		for (String value : values) {
+			resultBuffer.append(value);
+		}
+		final ReplacerListener listener = this.replacer.listener;
+		if (listener != null) {
+			listener.onSubstitution(this.inputLength, length, System.nanoTime() - this.started);
+		}
+		return resultBuffer.toString();
+	}
+
+	private String expand(final Token token, final String key, final String value) {
+		if (this.expansion == null) {
+			return value;
+		}
+		final String expanded = this.expansion.getExpanded(key);
+		return expanded != null ? expanded : this.expansion.expand(token, key, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (isDone()) {
+			return false;
+		}
+		this.cancelled = true;
+		for (Object part : this.parts) {
+			if (part instanceof PendingValue) {
+				((PendingValue) part).value.cancel(mayInterruptIfRunning);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	@Override
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	@Override
+	public boolean isDone() {
+		if (this.cancelled) {
+			return true;
+		}
+		for (Object part : this.parts) {
+			if (part instanceof PendingValue && !((PendingValue) part).value.isDone()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncSubstitution [parts=" + this.parts.size() + ", done=" + isDone() + "]";
+	}
+
+	/**
+	 * the static value of a token that is expanded when the result is
+	 * assembled
+	 */
+	private static final class StaticValue {
+
+		private final Token token;
+		private final String key;
+		private final String value;
+
+		StaticValue(Token token, String key, String value) {
+			this.token = token;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * the value of a generator that is (or was) running
+	 */
+	private final class PendingValue {
+
+		private final Token token;
+		private final String key;
+		private final Future<String> value;
+		// the System#nanoTime() the generator times out at, 0 if it has no
+		// timeout
+		private final long timesOutAt;
+
+		PendingValue(Token token, String key, Future<String> value) {
+			this.token = token;
+			this.key = key;
+			this.value = value;
+			this.timesOutAt = token.getTimeoutNanos() > 0 ? System.nanoTime() + token.getTimeoutNanos() : 0;
+		}
+
+		/**
+		 * @return the value of the generator (may be null) or the fallback if
+		 *         the generator failed or timed out
+		 * @throws TimeoutException
+		 *             if the deadline of the whole substitution passed first
+		 */
+		String await(final long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+			final long waitUntil = earliest(deadline, this.timesOutAt);
+			try {
+				return waitUntil == 0 ? this.value.get() : this.value.get(Math.max(0, waitUntil - System.nanoTime()),
+						TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				if (waitUntil != this.timesOutAt) {
+					throw e;
+				}
+				this.value.cancel(true);
+				if (this.token.getFallback() != null) {
+					return this.token.getFallback();
+				}
+				throw new ExecutionException(AsyncSubstitution.this.replacer.failure(new GeneratorTimeoutException(
+						String.format("the generator of token '%s' took longer than %d ms", this.token.getToken(),
+								TimeUnit.NANOSECONDS.toMillis(this.token.getTimeoutNanos())))));
+			} catch (ExecutionException e) {
+				if (this.token.getFallback() != null) {
+					return this.token.getFallback();
+				}
+				throw e;
+			}
+		}
+
+		private long earliest(final long a, final long b) {
+			if (a == 0 || b == 0) {
+				return a == 0 ? b : a;
+			}
+			return a - b < 0 ? a : b;
+		}
+	}
+}
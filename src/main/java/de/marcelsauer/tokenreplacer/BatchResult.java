@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * the results of {@link TokenReplacer#substituteAll(List)}. a failing string
+ * does not abort the batch, its exception is collected instead.
+ * 
+ * @author msauer
+ */
+public final class BatchResult {
+
+	private final List<String> results;
+	private final SortedMap<Integer, RuntimeException> failures;
+
+	BatchResult(String[] results, Map<Integer, RuntimeException> failures) {
+		this.results = Collections.unmodifiableList(Arrays.asList(results));
+		this.failures = Collections.unmodifiableSortedMap(new TreeMap<Integer, RuntimeException>(failures));
+	}
+
+	/**
+	 * @return the substituted strings in the same order as the input, null for
+	 *         a failed (or null) input
+	 */
+	public List<String> getResults() {
+		return this.results;
+	}
+
+	/**
+	 * @return the exceptions (e.g. {@link ParseException} or
+	 *         {@link NoValueOrGeneratorFoundException}) by index of the failed
+	 *         input, ordered by index
+	 */
+	public SortedMap<Integer, RuntimeException> getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * @return true if at least one input could not be substituted
+	 */
+	public boolean hasFailures() {
+		return !this.failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [results=" + this.results.size() + ", failures=" + this.failures + "]";
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.IOException;
+
+/**
+ * substitutes an input that arrives in chunks, e.g. the body of a response of
+ * a non-blocking server, created via
+ * {@link TokenReplacer#newChunkSubstitutor()}. every chunk is run through the
+ * state machine right away and the output known so far is returned, so
+ * literal text is passed on as soon as it arrives. only a token that is cut
+ * off at the end of a chunk is kept until the next chunk, the input as a
+ * whole is never buffered. the chunks are not kept, so the caller may reuse
+ * its buffer after each call.
+ * 
+ * <p>
+ * the caller decides when to hand over the next chunk, so the output is only
+ * produced as fast as it is consumed. a {@link ChunkSubstitutor} <b>IS NOT
+ * THREAD SAFE</b>, use one per stream. after {@link #finish()} it can be used
+ * for the next stream.
+ * </p>
+ * 
+ * <pre>
+ * ChunkSubstitutor substitutor = toky.newChunkSubstitutor();
+ * for (CharBuffer chunk : body) {
+ * 	send(substitutor.process(chunk));
+ * }
+ * send(substitutor.finish());
+ * </pre>
+ * 
+ * @author msauer
+ */
+public interface ChunkSubstitutor {
+
+	/**
+	 * @param chunk
+	 *            the next part of the input, must not be null
+	 * @return the output known after this chunk, may be empty if the chunk
+	 *         ends within a token
+	 * @throws ParseException
+	 *             when the input could not be parsed, the position is the one
+	 *             within the whole stream
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 */
+	String process(CharSequence chunk);
+
+	/**
+	 * same as {@link #process(CharSequence)} but appends the output to the
+	 * given {@link Appendable}
+	 * 
+	 * @throws IOException
+	 *             when appending to the output fails
+	 */
+	void process(CharSequence chunk, Appendable out) throws IOException;
+
+	/**
+	 * ends the current stream
+	 * 
+	 * @return the rest of the output, e.g. text that could have been the
+	 *         beginning of a multi char token start
+	 * @throws ParseException
+	 *             when the input ended within a token
+	 */
+	String finish();
+
+	/**
+	 * same as {@link #finish()} but appends the rest of the output to the
+	 * given {@link Appendable}
+	 * 
+	 * @throws IOException
+	 *             when appending to the output fails
+	 */
+	void finish(Appendable out) throws IOException;
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Map;
+
+/**
+ * static values for a large number of tokens, e.g. millions of translations,
+ * stored without an object per token. all names and values are kept back to
+ * back in one char arena, either on the heap or off-heap in a direct
+ * {@link ByteBuffer}. the entries are found via an open addressed hash table
+ * of ints, the hash is the one of {@link String#hashCode()}. a token needs
+ * about 30 bytes plus 2 bytes per char of its name and value, instead of a
+ * {@link Token}, its generators and a map entry.
+ * 
+ * <pre>
+ * CompactDictionary dictionary = new CompactDictionary();
+ * dictionary.put(&quot;greeting&quot;, &quot;hello&quot;);
+ * toky.withDictionary(dictionary);
+ * toky.substitute(&quot;{greeting} joe&quot;); // will produce &quot;hello joe&quot;
+ * </pre>
+ * 
+ * <p>
+ * replacing a value appends the new value, the old one stays in the arena
+ * until the dictionary is dropped. a dictionary that is not changed anymore
+ * can be read by several threads at once, it <b>IS NOT THREAD SAFE</b> while
+ * it is changed. a frozen replacer (see {@link TokenReplacer#freeze()}) keeps
+ * its own copy, so it is not affected by later changes.
+ * </p>
+ * 
+ * @author msauer
+ * @see TokenReplacer#withDictionary(CompactDictionary)
+ */
+public final class CompactDictionary {
+
+	private static final int INITIAL_ENTRIES = 64;
+	private static final int CHARS_PER_ENTRY = 16;
+
+	private final boolean offHeap;
+	// names and values back to back, filled up to arenaLength
+	private CharBuffer arena;
+	private int arenaLength;
+	// entry index + 1 per slot, 0 if the slot is free
+	private int[] slots;
+	// per entry in the order they were added
+	private int[] hashes;
+	private int[] nameOffsets;
+	private int[] nameLengths;
+	private int[] valueOffsets;
+	private int[] valueLengths;
+	private int size;
+	// counts the calls to put, tells a LiveDocument whether a value changed
+	private long modifications;
+
+	/**
+	 * a dictionary on the heap
+	 */
+	public CompactDictionary() {
+		this(INITIAL_ENTRIES, false);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of tokens that will be added, the dictionary grows
+	 *            if there are more. must not be negative
+	 * @param offHeap
+	 *            true to keep the names and values in a direct
+	 *            {@link ByteBuffer}, outside the heap
+	 */
+	public CompactDictionary(int expectedSize, boolean offHeap) {
+		Validate.isTrue(expectedSize >= 0, "the expected size must not be negative!");
+		this.offHeap = offHeap;
+		final int entries = Math.max(expectedSize, INITIAL_ENTRIES);
+		this.arena = allocate((int) Math.min(Integer.MAX_VALUE / 2, (long) entries * CHARS_PER_ENTRY));
+		this.slots = new int[slotsFor(entries)];
+		this.hashes = new int[entries];
+		this.nameOffsets = new int[entries];
+		this.nameLengths = new int[entries];
+		this.valueOffsets = new int[entries];
+		this.valueLengths = new int[entries];
+	}
+
+	/**
+	 * a snapshot of the given dictionary, the arena is trimmed to the chars in
+	 * use
+	 */
+	private CompactDictionary(CompactDictionary source) {
+		this.offHeap = source.offHeap;
+		this.arena = allocate(Math.max(source.arenaLength, 1));
+		final CharBuffer used = source.arena.duplicate();
+		used.limit(source.arenaLength);
+		this.arena.put(used);
+		this.arena.clear();
+		this.arenaLength = source.arenaLength;
+		this.slots = source.slots.clone();
+		this.hashes = source.hashes.clone();
+		this.nameOffsets = source.nameOffsets.clone();
+		this.nameLengths = source.nameLengths.clone();
+		this.valueOffsets = source.valueOffsets.clone();
+		this.valueLengths = source.valueLengths.clone();
+		this.size = source.size;
+		this.modifications = source.modifications;
+	}
+
+	/**
+	 * @return a copy that is not affected by later changes of this
+	 *         dictionary, e.g. for a frozen replacer
+	 */
+	CompactDictionary copy() {
+		return new CompactDictionary(this);
+	}
+
+	/**
+	 * adds the token or replaces the value of the token with the same name
+	 * 
+	 * @param token
+	 *            the name of the token, must not be null or empty
+	 * @param value
+	 *            the static value, must not be null
+	 * @return the {@link CompactDictionary} to allow method chaining
+	 */
+	public CompactDictionary put(String token, String value) {
+		Validate.notEmpty(token);
+		Validate.notNull(value);
+		this.modifications++;
+		final int hash = token.hashCode();
+		final int entry = find(token, hash);
+		if (entry >= 0) {
+			this.valueOffsets[entry] = append(value);
+			this.valueLengths[entry] = value.length();
+			return this;
+		}
+		if (this.size == this.hashes.length) {
+			grow();
+		}
+		final int added = this.size++;
+		this.hashes[added] = hash;
+		this.nameOffsets[added] = append(token);
+		this.nameLengths[added] = token.length();
+		this.valueOffsets[added] = append(value);
+		this.valueLengths[added] = value.length();
+		insert(this.slots, hash, added);
+		return this;
+	}
+
+	/**
+	 * adds all tokens of the map, see {@link #put(String, String)}
+	 * 
+	 * @return the {@link CompactDictionary} to allow method chaining
+	 */
+	public CompactDictionary putAll(Map<String, String> values) {
+		Validate.notNull(values);
+		for (Map.Entry<String, String> value : values.entrySet()) {
+			put(value.getKey(), value.getValue());
+		}
+		return this;
+	}
+
+	/**
+	 * @return the value of the token or null if there is none
+	 */
+	public String get(CharSequence token) {
+		Validate.notNull(token);
+		final int entry = find(token);
+		return entry < 0 ? null : getValue(entry);
+	}
+
+	/**
+	 * @return the number of tokens
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of bytes allocated for the arena, the hash table and
+	 *         the entries
+	 */
+	public long getFootprint() {
+		final long ints = this.slots.length + 5L * this.hashes.length;
+		return 2L * this.arena.capacity() + 4L * ints;
+	}
+
+	/**
+	 * @return the number of values put so far, changes whenever a value is
+	 *         added or replaced
+	 */
+	long getModifications() {
+		return this.modifications;
+	}
+
+	/**
+	 * @return the index of the entry with the given name or -1, no String is
+	 *         created for the name
+	 */
+	int find(CharSequence token) {
+		return token.length() == 0 ? -1 : find(token, hash(token));
+	}
+
+	String getValue(int entry) {
+		final int offset = this.valueOffsets[entry];
+		return this.arena.subSequence(offset, offset + this.valueLengths[entry]).toString();
+	}
+
+	/**
+	 * appends the value of the entry without creating a String
+	 * 
+	 * @return the number of chars appended
+	 */
+	int appendValue(int entry, Appendable out) throws IOException {
+		final int offset = this.valueOffsets[entry];
+		final int length = this.valueLengths[entry];
+		out.append(this.arena, offset, offset + length);
+		return length;
+	}
+
+	private int find(CharSequence token, int hash) {
+		final int mask = this.slots.length - 1;
+		int slot = spread(hash) & mask;
+		int entry;
+		while ((entry = this.slots[slot] - 1) >= 0) {
+			if (this.hashes[entry] == hash && nameEquals(entry, token)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private boolean nameEquals(int entry, CharSequence token) {
+		final int length = this.nameLengths[entry];
+		if (length != token.length()) {
+			return false;
+		}
+		final int offset = this.nameOffsets[entry];
+		for (int i = 0; i < length; i++) {
+			if (this.arena.get(offset + i) != token.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the offset of the text within the arena
+	 */
+	private int append(String text) {
+		final int offset = this.arenaLength;
+		final long required = (long) offset + text.length();
+		if (required > this.arena.capacity()) {
+			Validate.isTrue(required <= Integer.MAX_VALUE / 2, "the dictionary is full!");
+			final CharBuffer arena = allocate((int) Math.min(Integer.MAX_VALUE / 2,
+					Math.max(required, this.arena.capacity() + (this.arena.capacity() >> 1))));
+			final CharBuffer used = this.arena.duplicate();
+			used.limit(offset);
+			arena.put(used);
+			// all access is absolute, relative to position 0
+			arena.clear();
+			this.arena = arena;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			this.arena.put(offset + i, text.charAt(i));
+		}
+		this.arenaLength = offset + text.length();
+		return offset;
+	}
+
+	private void grow() {
+		final int entries = this.hashes.length * 2;
+		this.hashes = copyOf(this.hashes, entries);
+		this.nameOffsets = copyOf(this.nameOffsets, entries);
+		this.nameLengths = copyOf(this.nameLengths, entries);
+		this.valueOffsets = copyOf(this.valueOffsets, entries);
+		this.valueLengths = copyOf(this.valueLengths, entries);
+		final int[] slots = new int[slotsFor(entries)];
+		for (int entry = 0; entry < this.size; entry++) {
+			insert(slots, this.hashes[entry], entry);
+		}
+		this.slots = slots;
+	}
+
+	private CharBuffer allocate(int chars) {
+		if (this.offHeap) {
+			return ByteBuffer.allocateDirect(chars * 2).asCharBuffer();
+		}
+		return CharBuffer.allocate(chars);
+	}
+
+	private static void insert(int[] slots, int hash, int entry) {
+		final int mask = slots.length - 1;
+		int slot = spread(hash) & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = entry + 1;
+	}
+
+	/**
+	 * @return a power of two, at least twice the number of entries
+	 */
+	private static int slotsFor(int entries) {
+		return Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+	}
+
+	private static int[] copyOf(int[] values, int length) {
+		final int[] copy = new int[length];
+		System.arraycopy(values, 0, copy, 0, values.length);
+		return copy;
+	}
+
+	private static int hash(final CharSequence token) {
+		if (token instanceof String) {
+			return token.hashCode();
+		}
+		int hash = 0;
+		for (int i = 0; i < token.length(); i++) {
+			hash = 31 * hash + token.charAt(i);
+		}
+		return hash;
+	}
+
+	private static int spread(final int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		return "CompactDictionary [size=" + this.size + ", offHeap=" + this.offHeap + ", footprint="
+				+ getFootprint() + "]";
+	}
+}
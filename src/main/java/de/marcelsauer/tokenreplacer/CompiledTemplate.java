@@ -0,0 +1,330 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * a template that was parsed once via {@link TokenReplacer#compile(String)}
+ * and can be rendered many times without parsing it again. the template itself
+ * is immutable, the values are looked up on every call to {@link #render()}
+ * so registering new values or generators on the {@link TokenReplacer} that
+ * compiled it will be reflected in the result.
+ *
+ * <pre>
+ * CompiledTemplate template = toky.compile(&quot;i can count to {number}&quot;);
+ * template.render(); // will produce &quot;i can count to 123&quot;
+ * </pre>
+ *
+ * @author msauer
+ * @see Toky
+ */
+public final class CompiledTemplate {
+
+	private final FiniteStateMachineTokenReplacer replacer;
+	private final List<Segment> segments;
+	// initial capacity of the result, the literal text plus some room per token
+	private final int resultCapacity;
+	private final int templateLength;
+
+	CompiledTemplate(FiniteStateMachineTokenReplacer replacer, List<Segment> segments, int templateLength) {
+		this.replacer = replacer;
+		this.segments = Collections.unmodifiableList(new ArrayList<Segment>(segments));
+		int length = 0;
+		for (Segment segment : segments) {
+			length += segment.getExpectedLength();
+		}
+		this.resultCapacity = FiniteStateMachineTokenReplacer.resultCapacity(length);
+		this.templateLength = templateLength;
+	}
+
+	/**
+	 * @return the result after replacing all tokens with the values currently
+	 *         registered
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 */
+	public String render() {
+		return renderWith(null);
+	}
+
+	/**
+	 * renders the template with positional values, like
+	 * {@link java.text.MessageFormat}. a token without arguments whose name is
+	 * a number, e.g. <code>{0}</code>, is replaced by the value at that index,
+	 * nothing is registered or looked up for it. all other tokens and numbers
+	 * beyond the given values are resolved as in {@link #render()}.
+	 * positional values are not expanded.
+	 * 
+	 * <pre>
+	 * CompiledTemplate template = toky.compile(&quot;{0} owes {1} {currency}&quot;);
+	 * template.render(&quot;joe&quot;, 12); // will produce &quot;joe owes 12 EUR&quot;
+	 * </pre>
+	 * 
+	 * @param values
+	 *            the values by index, <code>null</code> values are rendered as
+	 *            &quot;null&quot;
+	 * @return the result after replacing all tokens
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 */
+	public String render(Object... values) {
+		Validate.notNull(values);
+		return renderWith(values);
+	}
+
+	private String renderWith(Object[] values) {
+		final ReplacerListener listener = this.replacer.listener;
+		final long started = listener != null ? System.nanoTime() : 0;
+		final StringBuilder resultBuffer = new StringBuilder(this.resultCapacity);
+		final Map<String, String> generatorCache = this.replacer.newGeneratorCache();
+		final FiniteStateMachineTokenReplacer.NestedExpansion expansion = this.replacer
+				.newNestedExpansion(generatorCache);
+		for (Segment segment : this.segments) {
+			segment.render(this.replacer, resultBuffer, generatorCache, expansion, values);
+		}
+		if (listener != null) {
+			listener.onSubstitution(this.templateLength, resultBuffer.length(), System.nanoTime() - started);
+		}
+		return resultBuffer.toString();
+	}
+
+	/**
+	 * renders the template without waiting for one generator after the other.
+	 * the generators of all tokens are started on the given executor right
+	 * away, static values and literal text are resolved by the calling
+	 * thread. the result is assembled in order when {@link Future#get()} is
+	 * called. a generator that takes longer than the timeout of its
+	 * {@link Token} is cancelled and replaced by the token's fallback, see
+	 * {@link Token#withTimeout(long, java.util.concurrent.TimeUnit)} and
+	 * {@link Token#withFallback(String)}. nested values are expanded when the
+	 * result is assembled.
+	 * 
+	 * @param executor
+	 *            runs the generators, e.g. a thread per task executor for
+	 *            generators waiting for I/O. must not be null
+	 * @return the result, {@link Future#get()} throws an
+	 *         {@link java.util.concurrent.ExecutionException} if a generator
+	 *         without fallback failed or timed out
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 */
+	public Future<String> renderAsync(ExecutorService executor) {
+		Validate.notNull(executor);
+		// shared by the generators running at the same time
+		final Map<String, String> generatorCache = new ConcurrentHashMap<String, String>();
+		final AsyncSubstitution result = new AsyncSubstitution(this.replacer, this.templateLength,
+				this.replacer.newNestedExpansion(generatorCache));
+		try {
+			for (Segment segment : this.segments) {
+				segment.renderAsync(this.replacer, result, generatorCache, executor);
+			}
+		} catch (RuntimeException e) {
+			result.cancel(true);
+			throw e;
+		}
+		return result;
+	}
+
+	/**
+	 * @return a {@link LiveDocument} that renders this template once and
+	 *         afterwards only the tokens whose values were registered again
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 */
+	public LiveDocument newLiveDocument() {
+		return new LiveDocument(this.replacer, this.segments);
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledTemplate [segments=" + this.segments + "]";
+	}
+
+	abstract static class Segment {
+
+		/**
+		 * @param expansion
+		 *            null if values are not expanded
+		 * @param values
+		 *            the positional values, null if there are none
+		 */
+		abstract void render(FiniteStateMachineTokenReplacer replacer, StringBuilder resultBuffer,
+				Map<String, String> generatorCache, FiniteStateMachineTokenReplacer.NestedExpansion expansion,
+				Object[] values);
+
+		abstract void renderAsync(FiniteStateMachineTokenReplacer replacer, AsyncSubstitution result,
+				Map<String, String> generatorCache, ExecutorService executor);
+
+		/**
+		 * @return the number of chars this segment usually renders to
+		 */
+		abstract int getExpectedLength();
+
+		/**
+		 * @return the name of the token the segment depends on, null for
+		 *         literal text
+		 */
+		String getTokenName() {
+			return null;
+		}
+	}
+
+	/**
+	 * text that is copied to the result as-is
+	 */
+	static final class Literal extends Segment {
+
+		private final String text;
+
+		Literal(String text) {
+			this.text = text;
+		}
+
+		@Override
+		void render(FiniteStateMachineTokenReplacer replacer, StringBuilder resultBuffer,
+				Map<String, String> generatorCache, FiniteStateMachineTokenReplacer.NestedExpansion expansion,
+				Object[] values) {
+			resultBuffer.append(this.text);
+		}
+
+		@Override
+		void renderAsync(FiniteStateMachineTokenReplacer replacer, AsyncSubstitution result,
+				Map<String, String> generatorCache, ExecutorService executor) {
+			result.addText(this.text);
+		}
+
+		@Override
+		int getExpectedLength() {
+			return this.text.length();
+		}
+
+		@Override
+		public String toString() {
+			return "Literal [text=" + this.text + "]";
+		}
+	}
+
+	/**
+	 * a token with its already split arguments and the original text that is
+	 * used when missing values are ignored. a numeric token without arguments
+	 * also keeps its index for the positional values.
+	 */
+	static final class TokenReference extends Segment {
+
+		private final String tokenName;
+		private final String[] args;
+		private final String unresolved;
+		private final int index;
+
+		TokenReference(String tokenName, String[] args, String unresolved) {
+			this.tokenName = tokenName;
+			this.args = args;
+			this.unresolved = unresolved;
+			this.index = args.length == 0 ? index(tokenName) : -1;
+		}
+
+		/**
+		 * @return the number the token name consists of, -1 if it is not a
+		 *         (non negative int) number
+		 */
+		static int index(String tokenName) {
+			final int length = tokenName.length();
+			// 9 digits always fit into an int
+			if (length == 0 || length > 9) {
+				return -1;
+			}
+			int index = 0;
+			for (int i = 0; i < length; i++) {
+				final char c = tokenName.charAt(i);
+				if (c < '0' || c > '9') {
+					return -1;
+				}
+				index = index * 10 + (c - '0');
+			}
+			return index;
+		}
+
+		@Override
+		void render(FiniteStateMachineTokenReplacer replacer, StringBuilder resultBuffer,
+				Map<String, String> generatorCache, FiniteStateMachineTokenReplacer.NestedExpansion expansion,
+				Object[] values) {
+			if (values != null && this.index >= 0 && this.index < values.length) {
+				resultBuffer.append(values[this.index]);
+				return;
+			}
+			// generators get their own copy so they can not change the template,
+			// an empty array can not be changed
+			final String[] args = this.args.length == 0 ? this.args : this.args.clone();
+			resultBuffer.append(replacer.evalCompiledToken(this.tokenName, args, this.unresolved, generatorCache,
+					expansion));
+		}
+
+		@Override
+		void renderAsync(final FiniteStateMachineTokenReplacer replacer, AsyncSubstitution result,
+				final Map<String, String> generatorCache, ExecutorService executor) {
+			final Token token = replacer.getRegisteredToken(this.tokenName);
+			final String[] args = this.args.length == 0 ? this.args : this.args.clone();
+			if (token == null || (!result.isExpanding() && token.hasStaticValue())) {
+				result.addText(String.valueOf(replacer.evalCompiledToken(this.tokenName, args, this.unresolved,
+						generatorCache, null)));
+				return;
+			}
+			// the key is taken before the generator might change the arguments
+			final String key = result.isExpanding() ? Utils.cacheKey(this.tokenName, args) : null;
+			if (token.hasStaticValue()) {
+				result.addValue(token, key, replacer.evalCompiledToken(this.tokenName, args, this.unresolved,
+						generatorCache, null));
+				return;
+			}
+			result.addValue(token, key, executor.submit(new Callable<String>() {
+
+				@Override
+				public String call() {
+					return replacer.evalCompiledToken(TokenReference.this.tokenName, args,
+							TokenReference.this.unresolved, generatorCache, null);
+				}
+			}));
+		}
+
+		@Override
+		int getExpectedLength() {
+			return this.unresolved.length();
+		}
+
+		@Override
+		String getTokenName() {
+			return this.tokenName;
+		}
+
+		@Override
+		public String toString() {
+			return "TokenReference [tokenName=" + this.tokenName + ", args=" + Utils.join(this.args, ",") + "]";
+		}
+	}
+}
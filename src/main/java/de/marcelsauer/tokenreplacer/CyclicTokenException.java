@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.List;
+
+/**
+ * thrown when the value of a token contains the token itself, directly or via
+ * other tokens, e.g. {a} -> "{b}" and {b} -> "{a}". the path ends with the
+ * token that closes the cycle.
+ * 
+ * @author msauer
+ */
+public class CyclicTokenException extends NestedExpansionException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CyclicTokenException (String msg, List<String> path) {
+		super(msg, path);
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.IOException;
+
+import de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser;
+import de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.ParseHandler;
+import de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.State;
+
+/**
+ * the state machine for multi char delimiters and several dialects at once,
+ * e.g. ${name}, {{name}} and %name% in a single pass. literal text is skipped
+ * up to the next char that begins any token start (a lookup table), only
+ * there the starts are compared, the longest first. the end of a token is
+ * only compared with the end of its own dialect.
+ * 
+ * <p>
+ * like the single char state machine the input can be handed over in chunks.
+ * a start or end that is cut off at the end of a chunk is kept and completed
+ * with the beginning of the next chunk.
+ * </p>
+ * 
+ * @author msauer
+ */
+final class DialectParser implements CharParser {
+
+	private static final int MATCH = 0;
+	private static final int NO_MATCH = 1;
+	private static final int NEED_MORE = 2;
+
+	private final FiniteStateMachineTokenReplacer replacer;
+	private final TokenDelimiters delimiters;
+	private final ParseHandler handler;
+	private final StringBuilder tokenBuffer = new StringBuilder();
+	private final StringBuilder argsBuffer = new StringBuilder();
+	// the end of the previous chunk that might be the beginning of a delimiter
+	private final StringBuilder carry = new StringBuilder();
+	private final StringBuilder combined = new StringBuilder();
+	private State state = State.READING_INPUT;
+	private int dialect;
+	// chars passed to this parser so far
+	private long position;
+
+	DialectParser(FiniteStateMachineTokenReplacer replacer, TokenDelimiters delimiters, ParseHandler handler) {
+		this.replacer = replacer;
+		this.delimiters = delimiters;
+		this.handler = handler;
+	}
+
+	/**
+	 * @return true if the parser was created for the given delimiters
+	 */
+	boolean isFor(TokenDelimiters delimiters) {
+		return this.delimiters == delimiters;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+	 * #parse(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public void parse(final CharSequence input, final int start, final int end) throws IOException {
+		int from = start;
+		while (this.carry.length() > 0 && from < end) {
+			final int take = Math.min(end - from, this.delimiters.getMaxLength());
+			final long carryPosition = this.position - this.carry.length();
+			this.combined.setLength(0);
+			this.combined.append(this.carry).append(input, from, from + take);
+			this.carry.setLength(0);
+			scan(this.combined, 0, this.combined.length(), carryPosition, false);
+			from += take;
+			this.position += take;
+		}
+		scan(input, from, end, this.position, false);
+		this.position += end - from;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+	 * #finish()
+	 */
+	@Override
+	public void finish() throws IOException {
+		if (this.carry.length() > 0) {
+			this.combined.setLength(0);
+			this.combined.append(this.carry);
+			this.carry.setLength(0);
+			scan(this.combined, 0, this.combined.length(), this.position - this.combined.length(), true);
+		}
+		if (this.state != State.READING_INPUT) {
+			this.replacer.error(this.position);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+	 * #reset()
+	 */
+	@Override
+	public void reset() {
+		this.state = State.READING_INPUT;
+		this.position = 0;
+		this.carry.setLength(0);
+		this.tokenBuffer.setLength(0);
+		this.argsBuffer.setLength(0);
+	}
+
+	/**
+	 * @param base
+	 *            the position of input[start] within the whole input
+	 * @param last
+	 *            true if no more input follows, so a cut off delimiter is
+	 *            just text
+	 */
+	private void scan(final CharSequence input, final int start, final int end, final long base, final boolean last)
+			throws IOException {
+		final char argsStart = this.replacer.argsStart;
+		final char argsEnd = this.replacer.argsEnd;
+		int literalStart = start;
+		int i = start;
+		while (i < end) {
+			if (this.state == State.READING_INPUT) {
+				while (i < end && !this.delimiters.isStartCandidate(input.charAt(i))) {
+					i++;
+				}
+				if (i == end) {
+					break;
+				}
+				if (input.charAt(i) == Constants.DEFAULT_END_OF_STRING) {
+					reportText(input, literalStart, i);
+					literalStart = ++i;
+					continue;
+				}
+				int matched = NO_MATCH;
+				int dialect = 0;
+				for (int n = 0; n < this.delimiters.getDialectCount() && matched == NO_MATCH; n++) {
+					dialect = this.delimiters.byStartLength(n);
+					matched = match(input, i, end, this.delimiters.getStart(dialect), last);
+				}
+				if (matched == NO_MATCH) {
+					i++;
+					continue;
+				}
+				reportText(input, literalStart, i);
+				if (matched == NEED_MORE) {
+					this.carry.append(input, i, end);
+					return;
+				}
+				this.state = State.TOKEN_STARTED;
+				this.dialect = dialect;
+				this.tokenBuffer.setLength(0);
+				this.argsBuffer.setLength(0);
+				i += this.delimiters.getStart(dialect).length();
+				continue;
+			}
+
+			final char c = input.charAt(i);
+			switch (this.state) {
+			case TOKEN_STARTED:
+				if (isNameChar(c, argsStart, argsEnd)) {
+					this.state = State.READING_TOKEN;
+					this.tokenBuffer.append(c);
+				} else {
+					this.replacer.error(base + i - start);
+				}
+				i++;
+				break;
+			case READING_TOKEN:
+				if (isNameChar(c, argsStart, argsEnd)) {
+					this.tokenBuffer.append(c);
+					i++;
+				} else if (c == argsStart) {
+					this.state = State.TOKEN_ARGS_STARTED;
+					i++;
+				} else {
+					i = matchEnd(input, i, end, base, start, last);
+					if (i < 0) {
+						return;
+					}
+					literalStart = i;
+				}
+				break;
+			case TOKEN_ARGS_STARTED:
+			case READING_TOKEN_ARGS:
+				if (c == argsEnd) {
+					this.state = State.TOKEN_ARGS_END;
+				} else if (isNameChar(c, argsStart, argsEnd)) {
+					this.state = State.READING_TOKEN_ARGS;
+					this.argsBuffer.append(c);
+				} else {
+					this.replacer.error(base + i - start);
+				}
+				i++;
+				break;
+			case TOKEN_ARGS_END:
+				if (c == argsEnd) {
+					// stay
+					i++;
+				} else {
+					i = matchEnd(input, i, end, base, start, last);
+					if (i < 0) {
+						return;
+					}
+					literalStart = i;
+				}
+				break;
+			default:
+				this.replacer.error(base + i - start);
+			}
+		}
+		if (this.state == State.READING_INPUT) {
+			reportText(input, literalStart, end);
+		}
+	}
+
+	/**
+	 * reports the token if the end of its dialect is at position i
+	 * 
+	 * @return the position after the end or -1 if the end was cut off and
+	 *         kept for the next chunk
+	 */
+	private int matchEnd(final CharSequence input, final int i, final int end, final long base, final int start,
+			final boolean last) throws IOException {
+		final String tokenEnd = this.delimiters.getEnd(this.dialect);
+		final int matched = match(input, i, end, tokenEnd, last);
+		if (matched == NEED_MORE) {
+			this.carry.append(input, i, end);
+			return -1;
+		}
+		if (matched == NO_MATCH) {
+			this.replacer.error(base + i - start);
+		}
+		this.state = State.READING_INPUT;
+		this.handler.onToken(this.tokenBuffer, this.argsBuffer, this.dialect);
+		return i + tokenEnd.length();
+	}
+
+	private boolean isNameChar(final char c, final char argsStart, final char argsEnd) {
+		return c != argsStart && c != argsEnd && !this.delimiters.isDelimiter(c);
+	}
+
+	private void reportText(final CharSequence input, final int start, final int end) throws IOException {
+		if (start < end) {
+			this.handler.onText(input, start, end);
+		}
+	}
+
+	private static int match(final CharSequence input, final int i, final int end, final String sequence,
+			final boolean last) {
+		final int available = Math.min(sequence.length(), end - i);
+		for (int k = 0; k < available; k++) {
+			if (input.charAt(i + k) != sequence.charAt(k)) {
+				return NO_MATCH;
+			}
+		}
+		if (available == sequence.length()) {
+			return MATCH;
+		}
+		return last ? NO_MATCH : NEED_MORE;
+	}
+}
@@ -16,8 +16,34 @@
 
 package de.marcelsauer.tokenreplacer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * parser implementation based on Finite State machine design <br/>
@@ -34,6 +60,37 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	 */
 	private static final char END_OF_STRING = Constants.DEFAULT_END_OF_STRING;
 
+	/**
+	 * chars read at once when substituting from a {@link Reader}
+	 */
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
+	/**
+	 * bytes of an input file mapped into memory at once
+	 */
+	private static final int MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * bytes collected before writing them to an output file
+	 */
+	private static final int CHANNEL_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * minimum chars substituted by one task of a parallel substitution
+	 */
+	private static final int PARALLEL_CHUNK_SIZE = 1024 * 1024;
+
+	/**
+	 * strings substituted by one task of a parallel batch
+	 */
+	private static final int BATCH_SLICE_SIZE = 256;
+
+	/**
+	 * passed to all generators of tokens without arguments, an empty array can
+	 * not be changed so it can be shared
+	 */
+	private static final String[] NO_ARGS = new String[0];
+
 	protected char tokenStart = Constants.DEFAULT_TOKEN_START;
 	protected char tokenEnd = Constants.DEFAULT_TOKEN_END;
 
@@ -41,116 +98,1666 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	protected char argsEnd = Constants.DEFAULT_ARGS_END;
 	protected char argsSep = Constants.DEFAULT_ARGS_SEPARATOR;
 
+	// the token start and end of all dialects, the first one is tokenStart
+	// and tokenEnd as long as they are single chars
+	private TokenDelimiters delimiters = new TokenDelimiters(String.valueOf(Constants.DEFAULT_TOKEN_START),
+			String.valueOf(Constants.DEFAULT_TOKEN_END));
+
 	protected boolean ignoreMissingValues = false;
 	protected boolean generatorCachingEnabled = false;
+	// 0 if values are not expanded
+	protected int maxExpansionDepth = 0;
+	protected GeneratorCache sharedGeneratorCache;
+	// static values looked up after the registered tokens, may be null
+	protected CompactDictionary dictionary;
+	// null if templates are compiled on every call
+	private TemplateCache templateCache;
+	protected ReplacerListener listener;
+	// built from the token names on first use, dropped when a token is
+	// registered
+	private volatile LiteralAutomaton literalAutomaton;
 
 	protected final Map<String, Token> tokens = new HashMap<String, Token>();
+	// the same tokens, looked up with the name as read from the input
+	private final TokenTable tokenTable = new TokenTable();
+	// counts the calls to register(Token), tells a LiveDocument whether any
+	// token a nested value may depend on was registered since its last refresh
+	private int registrations;
+
+	public FiniteStateMachineTokenReplacer() {
+	}
+
+	/**
+	 * copies the settings and tokens of the given replacer. the {@link Token}s
+	 * are copied as well, so changing them afterwards does not affect the
+	 * copy.
+	 */
+	FiniteStateMachineTokenReplacer(FiniteStateMachineTokenReplacer source) {
+		this.tokenStart = source.tokenStart;
+		this.tokenEnd = source.tokenEnd;
+		this.argsStart = source.argsStart;
+		this.argsEnd = source.argsEnd;
+		this.argsSep = source.argsSep;
+		this.delimiters = source.delimiters;
+		this.ignoreMissingValues = source.ignoreMissingValues;
+		this.generatorCachingEnabled = source.generatorCachingEnabled;
+		this.maxExpansionDepth = source.maxExpansionDepth;
+		// the cache is meant to be shared, so it is not copied
+		this.sharedGeneratorCache = source.sharedGeneratorCache;
+		// the copy must not see later changes of the dictionary
+		this.dictionary = source.dictionary != null ? source.dictionary.copy() : null;
+		// the cached templates belong to the source, the copy starts empty
+		this.templateCache = source.templateCache != null ? source.templateCache.copy() : null;
+		this.listener = source.listener;
+		this.literalAutomaton = source.literalAutomaton;
+		for (Token token : source.tokens.values()) {
+			final Token copy = token.copy();
+			this.tokens.put(copy.getToken(), copy);
+			this.tokenTable.put(copy);
+		}
+	}
 
 	protected enum State {
 		READING_INPUT, TOKEN_STARTED, READING_TOKEN, TOKEN_ARGS_STARTED, READING_TOKEN_ARGS, TOKEN_ARGS_END, ERROR
 	}
 
-	@Override
-	public String substitute(String toSubstitute) {
+	/**
+	 * receives the literal characters and tokens found while running the state
+	 * machine over a template, see {@link Parser}
+	 */
+	interface ParseHandler {
+
+		/**
+		 * a run of literal text, the chars from start (inclusive) to end
+		 * (exclusive) of the input
+		 */
+		void onText(CharSequence input, int start, int end) throws IOException;
+
+		/**
+		 * the buffers are reused by the {@link Parser}, so they must not be
+		 * kept after the call returns
+		 */
+		void onToken(StringBuilder token, StringBuilder args, int dialect) throws IOException;
+	}
+
+	/**
+	 * a state machine that runs over chars, see {@link Parser} and
+	 * {@link DialectParser}
+	 */
+	interface CharParser {
+
+		/**
+		 * runs the state machine over the given part of the input and reports
+		 * every run of literal text and every complete token to the handler.
+		 *
+		 * @throws ParseException
+		 *             if the input is not well formed
+		 * @throws IOException
+		 *             if the handler fails to write the result
+		 */
+		void parse(CharSequence input, int start, int end) throws IOException;
+
+		/**
+		 * @throws ParseException
+		 *             if the input ended in the middle of a token
+		 * @throws IOException
+		 *             if the handler fails to write the result
+		 */
+		void finish() throws IOException;
+
+		/**
+		 * prepares the parser for a new input, also after a failed one
+		 */
+		void reset();
+	}
+
+	/**
+	 * @return the single char state machine if there is only one dialect of
+	 *         single char delimiters, the multi char one otherwise
+	 */
+	CharParser newParser(ParseHandler handler) {
+		final TokenDelimiters delimiters = this.delimiters;
+		if (delimiters.isSingleChar()) {
+			return new Parser(handler);
+		}
+		return new DialectParser(this, delimiters, handler);
+	}
+
+	@Override
+	public String substitute(String toSubstitute) {
+
+		if (toSubstitute == null) {
+			return null;
+		}
+		if (this.templateCache != null) {
+			return compile(toSubstitute).render();
+		}
+
+		final StringBuilder resultBuffer = new StringBuilder(resultCapacity(toSubstitute.length()));
+		try {
+			substituteTo(toSubstitute, resultBuffer);
+		} catch (IOException e) {
+			throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+		}
+		return resultBuffer.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.lang.String,
+	 * java.lang.Object[])
+	 */
+	@Override
+	public String substitute(String template, Object... values) {
+		Validate.notNull(values);
+		if (template == null) {
+			return null;
+		}
+		return compile(template).render(values);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteTo(java.lang.CharSequence
+	 * , java.lang.Appendable)
+	 */
+	@Override
+	public void substituteTo(CharSequence in, Appendable out) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+
+		final ReplacerListener listener = this.listener;
+		final long started = listener != null ? System.nanoTime() : 0;
+		final SubstitutingHandler handler = new SubstitutingHandler(out);
+		final CharParser parser = newParser(handler);
+		parser.parse(in, 0, in.length());
+		parser.finish();
+		if (listener != null) {
+			listener.onSubstitution(in.length(), handler.written, System.nanoTime() - started);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#newSubstitutor()
+	 */
+	@Override
+	public Substitutor newSubstitutor() {
+		return new ReusableSubstitutor();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#newChunkSubstitutor()
+	 */
+	@Override
+	public ChunkSubstitutor newChunkSubstitutor() {
+		return new ChunkedSubstitution();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substituteAll(java.util.List)
+	 */
+	@Override
+	public BatchResult substituteAll(final List<String> toSubstitute) {
+		Validate.notNull(toSubstitute);
+		final String[] results = new String[toSubstitute.size()];
+		final Map<Integer, RuntimeException> failures = new HashMap<Integer, RuntimeException>();
+		substituteAll(toSubstitute, 0, toSubstitute.size(), results, failures);
+		return new BatchResult(results, failures);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substituteAll(java.util.List,
+	 * java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public BatchResult substituteAll(final List<String> toSubstitute, final ExecutorService executor) {
+		Validate.notNull(toSubstitute);
+		Validate.notNull(executor);
+		final String[] results = new String[toSubstitute.size()];
+		final Map<Integer, RuntimeException> failures = new ConcurrentHashMap<Integer, RuntimeException>();
+		final List<Future<?>> slices = new ArrayList<Future<?>>();
+		try {
+			for (int start = 0; start < toSubstitute.size(); start += BATCH_SLICE_SIZE) {
+				final int from = start;
+				final int to = Math.min(toSubstitute.size(), start + BATCH_SLICE_SIZE);
+				slices.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						substituteAll(toSubstitute, from, to, results, failures);
+					}
+				}));
+			}
+			for (Future<?> slice : slices) {
+				getResult(slice);
+			}
+		} finally {
+			for (Future<?> slice : slices) {
+				slice.cancel(true);
+			}
+		}
+		return new BatchResult(results, failures);
+	}
+
+	/**
+	 * substitutes the given slice of the input with one {@link Substitutor},
+	 * the slices of a parallel batch write to distinct indexes of the results
+	 */
+	private void substituteAll(final List<String> toSubstitute, final int from, final int to,
+			final String[] results, final Map<Integer, RuntimeException> failures) {
+		final Substitutor substitutor = newSubstitutor();
+		for (int i = from; i < to; i++) {
+			try {
+				results[i] = substitutor.substitute(toSubstitute.get(i));
+			} catch (RuntimeException e) {
+				failures.put(i, e);
+			}
+		}
+	}
+
+	/**
+	 * runs the chunks of one stream through the same parser, which keeps a
+	 * token cut off at the end of a chunk. the output of a chunk is collected
+	 * in a buffer that is reused for all chunks.
+	 */
+	private final class ChunkedSubstitution implements ChunkSubstitutor {
+
+		private final StringBuilder outputBuffer = new StringBuilder();
+		private SubstitutingHandler handler;
+		private CharParser parser;
+		private long inputLength;
+		private long started;
+
+		@Override
+		public String process(CharSequence chunk) {
+			try {
+				parse(chunk);
+			} catch (IOException e) {
+				throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+			}
+			return takeOutput();
+		}
+
+		@Override
+		public void process(CharSequence chunk, Appendable out) throws IOException {
+			Validate.notNull(out);
+			parse(chunk);
+			out.append(this.outputBuffer);
+			this.outputBuffer.setLength(0);
+		}
+
+		@Override
+		public String finish() {
+			try {
+				end();
+			} catch (IOException e) {
+				throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+			}
+			return takeOutput();
+		}
+
+		@Override
+		public void finish(Appendable out) throws IOException {
+			Validate.notNull(out);
+			end();
+			out.append(this.outputBuffer);
+			this.outputBuffer.setLength(0);
+		}
+
+		private void parse(CharSequence chunk) throws IOException {
+			Validate.notNull(chunk);
+			if (this.parser == null) {
+				// the settings at the start of a stream apply to the whole
+				// stream
+				this.started = System.nanoTime();
+				this.inputLength = 0;
+				this.handler = new SubstitutingHandler(this.outputBuffer);
+				this.parser = newParser(this.handler);
+			}
+			this.inputLength += chunk.length();
+			try {
+				this.parser.parse(chunk, 0, chunk.length());
+			} catch (RuntimeException e) {
+				this.parser = null;
+				this.outputBuffer.setLength(0);
+				throw e;
+			}
+		}
+
+		private void end() throws IOException {
+			if (this.parser == null) {
+				return;
+			}
+			final CharParser parser = this.parser;
+			this.parser = null;
+			try {
+				parser.finish();
+			} catch (RuntimeException e) {
+				this.outputBuffer.setLength(0);
+				throw e;
+			}
+			final ReplacerListener listener = FiniteStateMachineTokenReplacer.this.listener;
+			if (listener != null) {
+				listener.onSubstitution(this.inputLength, this.handler.written, System.nanoTime() - this.started);
+			}
+		}
+
+		private String takeOutput() {
+			final String output = this.outputBuffer.toString();
+			this.outputBuffer.setLength(0);
+			return output;
+		}
+	}
+
+	/**
+	 * keeps the parser, the result buffer and the generator cache between the
+	 * calls, so substituting many strings does not allocate them again and
+	 * again
+	 */
+	private final class ReusableSubstitutor implements Substitutor {
+
+		private final StringBuilder resultBuffer = new StringBuilder();
+		private final Map<String, String> generatorCache = new HashMap<String, String>();
+		private final SubstitutingHandler handler = new SubstitutingHandler(this.resultBuffer, this.generatorCache);
+		private CharParser parser = newParser(this.handler);
+		// the delimiters the parser was created for
+		private TokenDelimiters delimiters = FiniteStateMachineTokenReplacer.this.delimiters;
+
+		@Override
+		public String substitute(String toSubstitute) {
+			if (toSubstitute == null) {
+				return null;
+			}
+			render(toSubstitute);
+			return this.resultBuffer.toString();
+		}
+
+		@Override
+		public int substituteTo(CharSequence in, char[] out, int offset) {
+			Validate.notNull(in);
+			Validate.notNull(out);
+			Validate.isTrue(offset >= 0 && offset <= out.length, "the offset is not within the array!");
+			render(in);
+			final int length = this.resultBuffer.length();
+			if (length <= out.length - offset) {
+				this.resultBuffer.getChars(0, length, out, offset);
+			}
+			return length;
+		}
+
+		@Override
+		public boolean substituteTo(CharSequence in, CharBuffer out) {
+			Validate.notNull(in);
+			Validate.notNull(out);
+			render(in);
+			final int length = this.resultBuffer.length();
+			if (length > out.remaining()) {
+				return false;
+			}
+			if (out.hasArray()) {
+				this.resultBuffer.getChars(0, length, out.array(), out.arrayOffset() + out.position());
+				out.position(out.position() + length);
+			} else {
+				for (int i = 0; i < length; i++) {
+					out.put(this.resultBuffer.charAt(i));
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * substitutes into the result buffer, which keeps the capacity of the
+		 * largest result so far
+		 */
+		private void render(CharSequence in) {
+			final ReplacerListener listener = FiniteStateMachineTokenReplacer.this.listener;
+			final long started = listener != null ? System.nanoTime() : 0;
+			this.resultBuffer.setLength(0);
+			this.resultBuffer.ensureCapacity(resultCapacity(in.length()));
+			if (!this.generatorCache.isEmpty()) {
+				this.generatorCache.clear();
+			}
+			this.handler.clearExpansion();
+			if (this.delimiters != FiniteStateMachineTokenReplacer.this.delimiters) {
+				this.delimiters = FiniteStateMachineTokenReplacer.this.delimiters;
+				this.parser = newParser(this.handler);
+			}
+			this.parser.reset();
+			try {
+				this.parser.parse(in, 0, in.length());
+				this.parser.finish();
+			} catch (IOException e) {
+				throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+			}
+			if (listener != null) {
+				listener.onSubstitution(in.length(), this.resultBuffer.length(), System.nanoTime() - started);
+			}
+		}
+	}
+
+	/**
+	 * @return the initial capacity for the result of a template with the
+	 *         given length, leaving some room for values longer than their
+	 *         tokens
+	 */
+	static int resultCapacity(final int templateLength) {
+		final int capacity = templateLength + (templateLength >> 3) + 16;
+		return capacity < 0 ? templateLength : capacity;
+	}
+
+	/**
+	 * @return a new cache for the values created within one call or null if
+	 *         generator caching is disabled
+	 */
+	Map<String, String> newGeneratorCache() {
+		return this.generatorCachingEnabled ? new HashMap<String, String>() : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteParallel(java.lang
+	 * .String, java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public String substituteParallel(final String toSubstitute, final ExecutorService executor) {
+		return substituteParallel(toSubstitute, executor, PARALLEL_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize
+	 *            the minimum number of chars substituted by one task
+	 */
+	String substituteParallel(final String toSubstitute, final ExecutorService executor, final int chunkSize) {
+		Validate.notNull(executor);
+		if (toSubstitute == null) {
+			return null;
+		}
+		// multi char delimiters can not be split with a single indexOf
+		if (toSubstitute.length() < 2 * chunkSize || !this.delimiters.isSingleChar()) {
+			return substitute(toSubstitute);
+		}
+
+		final ReplacerListener listener = this.listener;
+		final long started = listener != null ? System.nanoTime() : 0;
+		final Map<String, String> generatorCache = new ConcurrentHashMap<String, String>();
+		final List<Future<StringBuilder>> chunks = new ArrayList<Future<StringBuilder>>();
+		try {
+			int start = 0;
+			while (start < toSubstitute.length()) {
+				final int end = nextSplitPosition(toSubstitute, start + chunkSize);
+				chunks.add(executor.submit(new SubstitutionTask(toSubstitute, start, end, generatorCache)));
+				start = end;
+			}
+			int length = 0;
+			final List<StringBuilder> results = new ArrayList<StringBuilder>(chunks.size());
+			for (Future<StringBuilder> chunk : chunks) {
+				final StringBuilder result = getResult(chunk);
+				length += result.length();
+				results.add(result);
+			}
+			final StringBuilder resultBuffer = new StringBuilder(length);
+			for (StringBuilder result : results) {
+				resultBuffer.append(result);
+			}
+			if (listener != null) {
+				listener.onSubstitution(toSubstitute.length(), length, System.nanoTime() - started);
+			}
+			return resultBuffer.toString();
+		} finally {
+			for (Future<StringBuilder> chunk : chunks) {
+				chunk.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * a valid input is always in the state {@link State#READING_INPUT} right
+	 * before a token start, as a token start within a token is an error. so
+	 * the input can be split there and every chunk can be parsed on its own.
+	 * if the input is invalid the chunk before the split position ends within
+	 * a token and reports the error at the same position the sequential
+	 * parser would have.
+	 * 
+	 * @return the position of the first token start at or after the given
+	 *         position or the length of the input if there is none
+	 */
+	private int nextSplitPosition(final String input, final int from) {
+		if (from >= input.length()) {
+			return input.length();
+		}
+		final int split = input.indexOf(this.tokenStart, from);
+		return split < 0 ? input.length() : split;
+	}
+
+	private <T> T getResult(final Future<T> chunk) {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the substitution to finish", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * substitutes one chunk of the input of
+	 * {@link FiniteStateMachineTokenReplacer#substituteParallel(String, ExecutorService)}
+	 */
+	private final class SubstitutionTask implements Callable<StringBuilder> {
+
+		private final String input;
+		private final int start;
+		private final int end;
+		private final Map<String, String> generatorCache;
+
+		SubstitutionTask(String input, int start, int end, Map<String, String> generatorCache) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.generatorCache = generatorCache;
+		}
+
+		@Override
+		public StringBuilder call() throws IOException {
+			final StringBuilder resultBuffer = new StringBuilder(this.end - this.start);
+			final Parser parser = new Parser(new SubstitutingHandler(resultBuffer, this.generatorCache), this.start);
+			parser.parse(this.input, this.start, this.end);
+			parser.finish();
+			return resultBuffer;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.Reader,
+	 * java.io.Writer)
+	 */
+	@Override
+	public void substitute(Reader in, Writer out) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+
+		final StringBuilder resultBuffer = new StringBuilder();
+		final CharParser parser = newParser(new SubstitutingHandler(resultBuffer));
+		final char[] buffer = new char[STREAM_BUFFER_SIZE];
+		final CharBuffer chunk = CharBuffer.wrap(buffer);
+
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			parser.parse(chunk, 0, read);
+			writeAndClear(resultBuffer, out, buffer);
+		}
+		// a delimiter cut off at the end of the input is only written now
+		parser.finish();
+		writeAndClear(resultBuffer, out, buffer);
+		out.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.InputStream,
+	 * java.io.OutputStream, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(InputStream in, OutputStream out, Charset charset) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+		Validate.notNull(charset);
+		substitute(new InputStreamReader(in, charset), new OutputStreamWriter(out, charset));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.File,
+	 * java.io.File, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(File in, File out, Charset charset) throws IOException {
+		substitute(in, out, charset, MAPPED_REGION_SIZE);
+	}
+
+	/**
+	 * @param regionSize
+	 *            the number of bytes of the input mapped at once
+	 */
+	void substitute(File in, File out, Charset charset, int regionSize) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+		Validate.notNull(charset);
+		Validate.isTrue(!in.getCanonicalFile().equals(out.getCanonicalFile()),
+				"the input and the output must be different files!");
+
+		final FileInputStream input = new FileInputStream(in);
+		try {
+			final FileOutputStream output = new FileOutputStream(out);
+			try {
+				if (isByteScannable(charset)) {
+					substitute(input.getChannel(), output.getChannel(), charset, regionSize);
+				} else {
+					substitute(input, output, charset);
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * maps the input region by region and runs the {@link ByteParser} over it.
+	 * literal text is written from the mapped regions to the output channel
+	 * without decoding it, only tokens are decoded and their values encoded.
+	 */
+	private void substitute(FileChannel in, FileChannel out, Charset charset, int regionSize) throws IOException {
+		final ChannelWritingHandler handler = new ChannelWritingHandler(out, charset);
+		final ByteParser parser = new ByteParser(handler, charset);
+		final long size = in.size();
+		for (long position = 0; position < size; position += regionSize) {
+			final int length = (int) Math.min(regionSize, size - position);
+			final MappedByteBuffer region = in.map(MapMode.READ_ONLY, position, length);
+			parser.parse(region, 0, length);
+		}
+		parser.finish();
+		handler.flush();
+	}
+
+	/**
+	 * the bytes of the input can be scanned for the delimiters without
+	 * decoding if every delimiter is a single byte with the same value as the
+	 * char and that byte can not be part of another char. this is the case for
+	 * UTF-8 (all bytes of multi byte chars are >= 0x80) and for single byte
+	 * charsets.
+	 */
+	boolean isByteScannable(Charset charset) {
+		// expanding values needs the char parser
+		if (!this.delimiters.isSingleChar() || this.maxExpansionDepth > 0) {
+			return false;
+		}
+		if (!charset.canEncode()) {
+			return false;
+		}
+		if (!"UTF-8".equals(charset.name()) && charset.newEncoder().maxBytesPerChar() != 1) {
+			return false;
+		}
+		for (char delimiter : new char[] { this.tokenStart, this.tokenEnd, this.argsStart, this.argsEnd, END_OF_STRING }) {
+			if (delimiter >= 0x80) {
+				return false;
+			}
+			final ByteBuffer encoded = charset.encode(String.valueOf(delimiter));
+			if (encoded.remaining() != 1 || encoded.get(0) != delimiter) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(byte[],
+	 * java.nio.charset.Charset)
+	 */
+	@Override
+	public byte[] substitute(byte[] in, Charset charset) {
+		Validate.notNull(in);
+		Validate.notNull(charset);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length);
+		try {
+			substitute(ByteBuffer.wrap(in), out, charset);
+		} catch (IOException e) {
+			throw new IllegalStateException("a ByteArrayOutputStream does not throw IOExceptions", e);
+		}
+		return out.toByteArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.nio.ByteBuffer,
+	 * java.io.OutputStream, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(ByteBuffer in, OutputStream out, Charset charset) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+		Validate.notNull(charset);
+
+		if (!isByteScannable(charset)) {
+			final Writer writer = new OutputStreamWriter(out, charset);
+			substituteTo(charset.decode(in.duplicate()), writer);
+			writer.flush();
+			return;
+		}
+		final ByteParser parser = new ByteParser(new OutputStreamWritingHandler(out, charset), charset);
+		parser.parse(in, in.position(), in.limit());
+		parser.finish();
+	}
+
+	/**
+	 * writes literal bytes and encoded token values. static values are only
+	 * encoded once per {@link Token} and {@link Charset}, see
+	 * {@link Token#getEncodedValue(Charset)}.
+	 */
+	private abstract class ByteWritingHandler implements ByteHandler {
+
+		private final Charset charset;
+		private final Map<String, String> generatorCache = newGeneratorCache();
+
+		ByteWritingHandler(Charset charset) {
+			this.charset = charset;
+		}
+
+		@Override
+		public void onBytes(ByteBuffer input, int start, int end) throws IOException {
+			final ByteBuffer literal = input.duplicate();
+			literal.limit(end);
+			literal.position(start);
+			write(literal);
+		}
+
+		@Override
+		public void onToken(StringBuilder token, StringBuilder args) throws IOException {
+			if (args.length() == 0) {
+				final Token registered = FiniteStateMachineTokenReplacer.this.tokenTable.get(token);
+				final byte[] encoded = registered == null ? null : registered.getEncodedValue(this.charset);
+				if (encoded != null) {
+					if (FiniteStateMachineTokenReplacer.this.listener != null) {
+						fireToken(registered.getToken(), true);
+					}
+					write(ByteBuffer.wrap(encoded));
+					return;
+				}
+			}
+			write(this.charset.encode(evalToken(token, args, this.generatorCache)));
+		}
+
+		abstract void write(ByteBuffer bytes) throws IOException;
+	}
+
+	/**
+	 * writes to a channel. small writes are collected in a buffer, literal runs
+	 * larger than the buffer are written directly.
+	 */
+	private final class ChannelWritingHandler extends ByteWritingHandler {
+
+		private final WritableByteChannel out;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+
+		ChannelWritingHandler(WritableByteChannel out, Charset charset) {
+			super(charset);
+			this.out = out;
+		}
+
+		@Override
+		void write(ByteBuffer bytes) throws IOException {
+			if (bytes.remaining() > this.buffer.remaining()) {
+				flush();
+			}
+			if (bytes.remaining() > this.buffer.remaining()) {
+				writeFully(bytes);
+			} else {
+				this.buffer.put(bytes);
+			}
+		}
+
+		void flush() throws IOException {
+			this.buffer.flip();
+			writeFully(this.buffer);
+			this.buffer.clear();
+		}
+
+		private void writeFully(ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) {
+				this.out.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * writes to an {@link OutputStream}, heap buffers are written directly
+	 * from their backing array
+	 */
+	private final class OutputStreamWritingHandler extends ByteWritingHandler {
+
+		private final OutputStream out;
+		private byte[] copyBuffer;
+
+		OutputStreamWritingHandler(OutputStream out, Charset charset) {
+			super(charset);
+			this.out = out;
+		}
+
+		@Override
+		void write(ByteBuffer bytes) throws IOException {
+			if (bytes.hasArray()) {
+				this.out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+				return;
+			}
+			if (this.copyBuffer == null) {
+				this.copyBuffer = new byte[STREAM_BUFFER_SIZE];
+			}
+			while (bytes.hasRemaining()) {
+				final int length = Math.min(bytes.remaining(), this.copyBuffer.length);
+				bytes.get(this.copyBuffer, 0, length);
+				this.out.write(this.copyBuffer, 0, length);
+			}
+		}
+	}
+
+	/**
+	 * writes the buffered result in slices of the (already consumed) read
+	 * buffer so no additional String copy of the result is created
+	 */
+	private void writeAndClear(final StringBuilder resultBuffer, final Writer out, final char[] buffer)
+			throws IOException {
+		for (int start = 0; start < resultBuffer.length(); start += buffer.length) {
+			int end = Math.min(resultBuffer.length(), start + buffer.length);
+			resultBuffer.getChars(start, end, buffer, 0);
+			out.write(buffer, 0, end - start);
+		}
+		resultBuffer.setLength(0);
+	}
+
+	/**
+	 * appends literals and evaluated tokens to the output, one instance per
+	 * substitution so the generator cache is not shared between calls. the
+	 * generator cache is null if caching is disabled.
+	 */
+	private final class SubstitutingHandler implements ParseHandler, LiteralAutomaton.MatchHandler {
+
+		private final Appendable out;
+		private final Map<String, String> generatorCache;
+		private NestedExpansion expansion;
+		// chars appended to the output
+		long written;
+
+		SubstitutingHandler(Appendable out) {
+			this(out, newGeneratorCache());
+		}
+
+		SubstitutingHandler(Appendable out, Map<String, String> generatorCache) {
+			this(out, generatorCache, null);
+		}
+
+		/**
+		 * @param expansion
+		 *            the expansion the output belongs to if it is the value of
+		 *            a token, null otherwise
+		 */
+		SubstitutingHandler(Appendable out, Map<String, String> generatorCache, NestedExpansion expansion) {
+			this.out = out;
+			this.generatorCache = generatorCache;
+			this.expansion = expansion;
+		}
+
+		/**
+		 * @return the nested expansion of this call, created on first use.
+		 *         null if values are not expanded
+		 */
+		private NestedExpansion getExpansion() {
+			if (FiniteStateMachineTokenReplacer.this.maxExpansionDepth == 0) {
+				return null;
+			}
+			if (this.expansion == null) {
+				this.expansion = new NestedExpansion(this.generatorCache);
+			}
+			return this.expansion;
+		}
+
+		/**
+		 * forgets the expanded values before the handler is used again
+		 */
+		void clearExpansion() {
+			if (this.expansion != null) {
+				this.expansion.clear();
+			}
+		}
+
+		@Override
+		public void onText(CharSequence input, int start, int end) throws IOException {
+			this.out.append(input, start, end);
+			this.written += end - start;
+		}
+
+		@Override
+		public void onToken(StringBuilder token, StringBuilder args, int dialect) throws IOException {
+			final Token registered = FiniteStateMachineTokenReplacer.this.tokenTable.get(token);
+			if (registered == null) {
+				final int appended = appendDictionaryValue(token, args, this.out);
+				if (appended >= 0) {
+					this.written += appended;
+					return;
+				}
+				// kept as it is, copied straight from the buffers
+				missingToken(token, args);
+				this.written += appendTokenWithPossibleArguments(this.out, token, args, dialect);
+				return;
+			}
+			// a generator returning null is appended as "null"
+			final String value = String.valueOf(evalRegisteredToken(registered, args, this.generatorCache,
+					getExpansion()));
+			this.out.append(value);
+			this.written += value.length();
+		}
+
+		@Override
+		public void onMatch(String key) throws IOException {
+			final String value = String.valueOf(evalCompiledToken(key, NO_ARGS, key, this.generatorCache, null));
+			this.out.append(value);
+			this.written += value.length();
+		}
+	}
+
+	/**
+	 * @return the registered token with the given name or null
+	 */
+	Token getRegisteredToken(String tokenName) {
+		return this.tokenTable.get(tokenName);
+	}
+
+	/**
+	 * @return the dictionary set via
+	 *         {@link #withDictionary(CompactDictionary)} or null
+	 */
+	CompactDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * @return the number of tokens registered so far, changes whenever a
+	 *         value or generator is (re-)registered
+	 */
+	int getRegistrations() {
+		return this.registrations;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteAsync(java.lang.
+	 * String, java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public Future<String> substituteAsync(String toSubstitute, ExecutorService executor) {
+		Validate.notNull(toSubstitute);
+		Validate.notNull(executor);
+		return compile(toSubstitute).renderAsync(executor);
+	}
+
+	/**
+	 * @return the state for expanding nested values within one call or null if
+	 *         values are not expanded
+	 */
+	NestedExpansion newNestedExpansion(Map<String, String> generatorCache) {
+		return this.maxExpansionDepth > 0 ? new NestedExpansion(generatorCache) : null;
+	}
+
+	/**
+	 * expands the tokens within values during one call. the tokens being
+	 * expanded are kept on a stack to find cycles and to limit the depth, the
+	 * expanded values are remembered by token name and arguments so a value is
+	 * expanded only once per call. values of generators are only remembered if
+	 * generator caching is enabled, otherwise the generator is called for
+	 * every occurrence as usual.
+	 */
+	final class NestedExpansion {
+
+		private final Map<String, String> generatorCache;
+		private final Map<String, String> expanded = new HashMap<String, String>();
+		// keys of the tokens currently being expanded, outermost first
+		private final List<String> path = new ArrayList<String>();
+		// true if the value being expanded contains a value of a generator
+		// that is called for every occurrence, so it must not be remembered
+		private boolean generated;
+
+		NestedExpansion(Map<String, String> generatorCache) {
+			this.generatorCache = generatorCache;
+		}
+
+		/**
+		 * @return the expanded value remembered for the key or null
+		 */
+		String getExpanded(String key) {
+			return this.expanded.get(key);
+		}
+
+		/**
+		 * @param key
+		 *            the token name and its arguments, see
+		 *            {@link Utils#cacheKey(String, String[])}
+		 * @return the value with all tokens in it replaced, recursively
+		 * @throws CyclicTokenException
+		 *             if the value contains the token itself, directly or
+		 *             via other tokens
+		 * @throws NestedExpansionException
+		 *             if the values are nested deeper than allowed
+		 */
+		String expand(final Token token, final String key, final String value) {
+			// the map is passed on every path, only the flag tells whether
+			// generator values may be remembered
+			final boolean remember = token.hasStaticValue()
+					|| (FiniteStateMachineTokenReplacer.this.generatorCachingEnabled && this.generatorCache != null);
+			if (!remember) {
+				this.generated = true;
+			}
+			if (value == null || !mightContainToken(value)) {
+				return value;
+			}
+			if (this.path.contains(key)) {
+				final List<String> cycle = names(this.path.subList(this.path.indexOf(key), this.path.size()));
+				cycle.add(name(key));
+				throw failure(new CyclicTokenException(String.format("the value of token '%s' contains itself: %s",
+						name(key), describe(cycle)), cycle));
+			}
+			final int maxDepth = FiniteStateMachineTokenReplacer.this.maxExpansionDepth;
+			if (this.path.size() >= maxDepth) {
+				final List<String> path = names(this.path);
+				path.add(name(key));
+				throw failure(new NestedExpansionException(String.format(
+						"the value of token '%s' is nested deeper than %d levels", name(key), maxDepth), path));
+			}
+			final StringBuilder result = new StringBuilder(resultCapacity(value.length()));
+			final boolean outerGenerated = this.generated;
+			this.generated = false;
+			this.path.add(key);
+			try {
+				final CharParser parser = newParser(new SubstitutingHandler(result, this.generatorCache, this));
+				parser.parse(value, 0, value.length());
+				parser.finish();
+			} catch (IOException e) {
+				throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+			} finally {
+				this.path.remove(this.path.size() - 1);
+			}
+			final String expandedValue = result.toString();
+			if (remember && !this.generated) {
+				this.expanded.put(key, expandedValue);
+			}
+			this.generated |= outerGenerated;
+			return expandedValue;
+		}
+
+		void clear() {
+			this.expanded.clear();
+			this.path.clear();
+			this.generated = false;
+		}
+
+		private boolean mightContainToken(final String value) {
+			final TokenDelimiters delimiters = FiniteStateMachineTokenReplacer.this.delimiters;
+			for (int i = 0; i < value.length(); i++) {
+				if (delimiters.isStartCandidate(value.charAt(i))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private String describe(final List<String> path) {
+			final StringBuilder description = new StringBuilder();
+			for (String name : path) {
+				description.append(description.length() == 0 ? "" : " -> ").append(name);
+			}
+			return description.toString();
+		}
+
+		private List<String> names(final List<String> keys) {
+			final List<String> names = new ArrayList<String>(keys.size() + 1);
+			for (String key : keys) {
+				names.add(name(key));
+			}
+			return names;
+		}
+
+		/**
+		 * @return the token of the key as it would be written without
+		 *         delimiters, e.g. name(1,2)
+		 */
+		private String name(final String key) {
+			final int argsStart = key.indexOf(END_OF_STRING);
+			if (argsStart < 0) {
+				return key;
+			}
+			final FiniteStateMachineTokenReplacer replacer = FiniteStateMachineTokenReplacer.this;
+			return key.substring(0, argsStart) + replacer.argsStart
+					+ key.substring(argsStart + 1).replace(END_OF_STRING, replacer.argsSep) + replacer.argsEnd;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteLiterals(java.lang
+	 * .String)
+	 */
+	@Override
+	public String substituteLiterals(String toSubstitute) {
+		if (toSubstitute == null) {
+			return null;
+		}
+
+		final StringBuilder resultBuffer = new StringBuilder(resultCapacity(toSubstitute.length()));
+		try {
+			substituteLiteralsTo(toSubstitute, resultBuffer);
+		} catch (IOException e) {
+			throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+		}
+		return resultBuffer.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteLiteralsTo(java.
+	 * lang.CharSequence, java.lang.Appendable)
+	 */
+	@Override
+	public void substituteLiteralsTo(CharSequence in, Appendable out) throws IOException {
+		Validate.notNull(in);
+		Validate.notNull(out);
+
+		final ReplacerListener listener = this.listener;
+		final long started = listener != null ? System.nanoTime() : 0;
+		final SubstitutingHandler handler = new SubstitutingHandler(out);
+		getLiteralAutomaton().replace(in, handler);
+		if (listener != null) {
+			listener.onSubstitution(in.length(), handler.written, System.nanoTime() - started);
+		}
+	}
+
+	private LiteralAutomaton getLiteralAutomaton() {
+		LiteralAutomaton automaton = this.literalAutomaton;
+		if (automaton == null) {
+			automaton = new LiteralAutomaton(this.tokens.keySet());
+			this.literalAutomaton = automaton;
+		}
+		return automaton;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#compile(java.lang.String)
+	 */
+	@Override
+	public CompiledTemplate compile(String template) {
+		Validate.notNull(template);
+		final TemplateCache cache = this.templateCache;
+		if (cache == null) {
+			return compileTemplate(template);
+		}
+		CompiledTemplate compiled = cache.get(template);
+		if (compiled == null) {
+			compiled = compileTemplate(template);
+			cache.put(template, compiled);
+		}
+		return compiled;
+	}
+
+	private CompiledTemplate compileTemplate(String template) {
+		final List<CompiledTemplate.Segment> segments = new ArrayList<CompiledTemplate.Segment>();
+		final StringBuilder literal = new StringBuilder();
+
+		final CharParser parser = newParser(new ParseHandler() {
+
+			@Override
+			public void onText(CharSequence input, int start, int end) {
+				literal.append(input, start, end);
+			}
+
+			@Override
+			public void onToken(StringBuilder token, StringBuilder args, int dialect) {
+				if (literal.length() > 0) {
+					segments.add(new CompiledTemplate.Literal(literal.toString()));
+					literal.setLength(0);
+				}
+				final String tokenName = token.toString();
+				segments.add(new CompiledTemplate.TokenReference(tokenName, extractArgs(tokenName, args),
+						tokenWithPossibleArguments(token, args, dialect)));
+			}
+		});
+		try {
+			parser.parse(template, 0, template.length());
+			parser.finish();
+		} catch (IOException e) {
+			throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+		}
+
+		if (literal.length() > 0) {
+			segments.add(new CompiledTemplate.Literal(literal.toString()));
+		}
+		return new CompiledTemplate(this, segments, template.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#freeze()
+	 */
+	@Override
+	public TokenReplacer freeze() {
+		return new FrozenTokenReplacer(this);
+	}
+
+	/**
+	 * the state machine. the input can be handed over in several chunks via
+	 * {@link #parse(CharSequence, int, int)}, the state (including a partly
+	 * read token) is kept between the calls so tokens may span chunk
+	 * boundaries. {@link #finish()} must be called after the last chunk.
+	 */
+	final class Parser implements CharParser {
+
+		private final ParseHandler handler;
+		private final StringBuilder tokenBuffer = new StringBuilder();
+		private final StringBuilder argsBuffer = new StringBuilder();
+		private State state = State.READING_INPUT;
+		// chars parsed by the previous calls
+		private long position;
+
+		Parser(ParseHandler handler) {
+			this(handler, 0);
+		}
+
+		/**
+		 * @param position
+		 *            the position of the first char passed to this parser
+		 *            within the whole input, used for error reporting
+		 */
+		Parser(ParseHandler handler, long position) {
+			this.handler = handler;
+			this.position = position;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+		 * #parse(java.lang.CharSequence, int, int)
+		 */
+		@Override
+		public void parse(final CharSequence input, final int start, final int end) throws IOException {
+			// start of the literal text not yet reported to the handler
+			int literalStart = start;
+			// String#indexOf is much faster than looking at every char but it
+			// can not stop at end, so it is only used up to the end of the
+			// string
+			final String string = input instanceof String && end == input.length() ? (String) input : null;
+			int nextEndOfString = -1;
+			for (int i = start; i < end; ++i) {
+				if (this.state == State.READING_INPUT) {
+					// jump to the next char that ends the literal text
+					if (string != null) {
+						if (nextEndOfString < i) {
+							nextEndOfString = indexOf(string, END_OF_STRING, i);
+						}
+						i = Math.min(indexOf(string, FiniteStateMachineTokenReplacer.this.tokenStart, i),
+								nextEndOfString);
+					} else {
+						i = skipLiteral(input, i, end);
+					}
+					if (i == end) {
+						break;
+					}
+				}
+				char c = input.charAt(i);
+				switch (this.state) {
+				case READING_INPUT:
+					if (isEndOfString(c)) {
+						reportText(input, literalStart, i);
+						literalStart = i + 1;
+					} else if (isTokenStart(c)) {
+						reportText(input, literalStart, i);
+						this.state = State.TOKEN_STARTED;
+						this.tokenBuffer.setLength(0);
+						this.argsBuffer.setLength(0);
+					}
+					break;
+				case TOKEN_STARTED:
+					if (isStdInput(c)) {
+						this.state = State.READING_TOKEN;
+						this.tokenBuffer.append(c);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case READING_TOKEN:
+					if (isStdInput(c)) {
+						this.tokenBuffer.append(c);
+					} else if (isArgStart(c)) {
+						this.state = State.TOKEN_ARGS_STARTED;
+					} else if (isTokenEnd(c)) {
+						this.state = State.READING_INPUT;
+						this.handler.onToken(this.tokenBuffer, this.argsBuffer, 0);
+						literalStart = i + 1;
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case TOKEN_ARGS_STARTED:
+					if (isArgEnd(c)) {
+						this.state = State.TOKEN_ARGS_END;
+					} else if (isStdInput(c)) {
+						this.state = State.READING_TOKEN_ARGS;
+						this.argsBuffer.append(c);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case READING_TOKEN_ARGS:
+					if (isArgEnd(c)) {
+						this.state = State.TOKEN_ARGS_END;
+					} else if (isStdInput(c)) {
+						this.argsBuffer.append(c);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case TOKEN_ARGS_END:
+					if (isArgEnd(c)) {
+						// stay
+					} else if (isTokenEnd(c)) {
+						this.state = State.READING_INPUT;
+						this.handler.onToken(this.tokenBuffer, this.argsBuffer, 0);
+						literalStart = i + 1;
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				default:
+					error(this.position + i - start);
+				}
+			}
+			this.position += end - start;
+			if (this.state == State.READING_INPUT) {
+				reportText(input, literalStart, end);
+			}
+		}
+
+		private void reportText(final CharSequence input, final int start, final int end) throws IOException {
+			if (start < end) {
+				this.handler.onText(input, start, end);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+		 * #finish()
+		 */
+		@Override
+		public void finish() {
+			if (!isFinalStateReached(this.state)) {
+				error(this.position);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * de.marcelsauer.tokenreplacer.FiniteStateMachineTokenReplacer.CharParser
+		 * #reset()
+		 */
+		@Override
+		public void reset() {
+			this.state = State.READING_INPUT;
+			this.position = 0;
+			this.tokenBuffer.setLength(0);
+			this.argsBuffer.setLength(0);
+		}
+	}
+
+	/**
+	 * receives the literal bytes and the (decoded) tokens found by the
+	 * {@link ByteParser}
+	 */
+	interface ByteHandler {
+
+		/**
+		 * a run of literal bytes, from start (inclusive) to end (exclusive) of
+		 * the input. the position and limit of the input must not be changed.
+		 */
+		void onBytes(ByteBuffer input, int start, int end) throws IOException;
+
+		/**
+		 * the buffers are reused by the {@link ByteParser}, so they must not
+		 * be kept after the call returns
+		 */
+		void onToken(StringBuilder token, StringBuilder args) throws IOException;
+	}
+
+	/**
+	 * the same state machine as the {@link Parser} but running over encoded
+	 * bytes, see {@link #isByteScannable(Charset)}. literal bytes are never
+	 * decoded, the bytes of token names and arguments are collected and only
+	 * decoded once they are complete. the state is kept between the calls to
+	 * {@link #parse(ByteBuffer, int, int)} so tokens may span chunks.
+	 */
+	final class ByteParser {
+
+		private final ByteHandler handler;
+		private final Charset charset;
+		private final StringBuilder tokenBuffer = new StringBuilder();
+		private final StringBuilder argsBuffer = new StringBuilder();
+		private byte[] pending = new byte[64];
+		private int pendingLength = 0;
+		private State state = State.READING_INPUT;
+		// bytes parsed by the previous calls
+		private long position = 0;
+
+		ByteParser(ByteHandler handler, Charset charset) {
+			this.handler = handler;
+			this.charset = charset;
+		}
+
+		/**
+		 * @throws ParseException
+		 *             if the input is not well formed
+		 * @throws IOException
+		 *             if the handler fails to write the result
+		 */
+		void parse(final ByteBuffer input, final int start, final int end) throws IOException {
+			// start of the literal bytes not yet reported to the handler
+			int literalStart = start;
+			for (int i = start; i < end; ++i) {
+				if (this.state == State.READING_INPUT) {
+					i = skipLiteral(input, i, end);
+					if (i == end) {
+						break;
+					}
+				}
+				final byte b = input.get(i);
+				final char c = (char) (b & 0xff);
+				switch (this.state) {
+				case READING_INPUT:
+					if (isEndOfString(c)) {
+						reportBytes(input, literalStart, i);
+						literalStart = i + 1;
+					} else if (isTokenStart(c)) {
+						reportBytes(input, literalStart, i);
+						this.state = State.TOKEN_STARTED;
+						this.tokenBuffer.setLength(0);
+						this.argsBuffer.setLength(0);
+						this.pendingLength = 0;
+					}
+					break;
+				case TOKEN_STARTED:
+					if (isStdInput(c)) {
+						this.state = State.READING_TOKEN;
+						collect(b);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case READING_TOKEN:
+					if (isStdInput(c)) {
+						collect(b);
+					} else if (isArgStart(c)) {
+						this.state = State.TOKEN_ARGS_STARTED;
+						decodePendingInto(this.tokenBuffer);
+					} else if (isTokenEnd(c)) {
+						this.state = State.READING_INPUT;
+						decodePendingInto(this.tokenBuffer);
+						this.handler.onToken(this.tokenBuffer, this.argsBuffer);
+						literalStart = i + 1;
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case TOKEN_ARGS_STARTED:
+					if (isArgEnd(c)) {
+						this.state = State.TOKEN_ARGS_END;
+					} else if (isStdInput(c)) {
+						this.state = State.READING_TOKEN_ARGS;
+						collect(b);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case READING_TOKEN_ARGS:
+					if (isArgEnd(c)) {
+						this.state = State.TOKEN_ARGS_END;
+						decodePendingInto(this.argsBuffer);
+					} else if (isStdInput(c)) {
+						collect(b);
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				case TOKEN_ARGS_END:
+					if (isArgEnd(c)) {
+						// stay
+					} else if (isTokenEnd(c)) {
+						this.state = State.READING_INPUT;
+						this.handler.onToken(this.tokenBuffer, this.argsBuffer);
+						literalStart = i + 1;
+					} else {
+						error(this.position + i - start);
+					}
+					break;
+				default:
+					error(this.position + i - start);
+				}
+			}
+			this.position += end - start;
+			if (this.state == State.READING_INPUT) {
+				reportBytes(input, literalStart, end);
+			}
+		}
+
+		/**
+		 * @throws ParseException
+		 *             if the input ended in the middle of a token
+		 */
+		void finish() {
+			if (!isFinalStateReached(this.state)) {
+				error(this.position);
+			}
+		}
+
+		private void reportBytes(final ByteBuffer input, final int start, final int end) throws IOException {
+			if (start < end) {
+				this.handler.onBytes(input, start, end);
+			}
+		}
 
-		StringBuilder tokenBuffer = new StringBuilder();
-		StringBuilder argsBuffer = new StringBuilder();
-		final StringBuilder resultBuffer = new StringBuilder();
-		final Map<String, String> generatorCache = new HashMap<String, String>();
+		private void collect(final byte b) {
+			if (this.pendingLength == this.pending.length) {
+				final byte[] grown = new byte[this.pending.length * 2];
+				System.arraycopy(this.pending, 0, grown, 0, this.pendingLength);
+				this.pending = grown;
+			}
+			this.pending[this.pendingLength++] = b;
+		}
 
-		if (toSubstitute == null) {
-			return null;
+		private void decodePendingInto(final StringBuilder buffer) {
+			buffer.append(this.charset.decode(ByteBuffer.wrap(this.pending, 0, this.pendingLength)));
+			this.pendingLength = 0;
 		}
+	}
 
-		State state = State.READING_INPUT;
-		toSubstitute = toSubstitute + END_OF_STRING;
-
-		for (int i = 0; i < toSubstitute.length(); ++i) {
-			char c = toSubstitute.charAt(i);
-			switch (state) {
-			case READING_INPUT:
-				if (isStdInput(c)) {
-					state = State.READING_INPUT;
-					resultBuffer.append(c);
-				} else if (isEndOfString(c)) {
-					state = State.READING_INPUT;
-				} else if (isTokenStart(c)) {
-					state = State.TOKEN_STARTED;
-					tokenBuffer = new StringBuilder();
-				} else {
-					resultBuffer.append(c);
-				}
-				break;
-			case TOKEN_STARTED:
-				if (isStdInput(c)) {
-					state = State.READING_TOKEN;
-					tokenBuffer.append(c);
-				} else {
-					state = State.ERROR;
-				}
-				break;
-			case READING_TOKEN:
-				if (isStdInput(c)) {
-					state = State.READING_TOKEN;
-					tokenBuffer.append(c);
-				} else if (isArgStart(c)) {
-					state = State.TOKEN_ARGS_STARTED;
-					argsBuffer = new StringBuilder();
-				} else if (isTokenEnd(c)) {
-					state = State.READING_INPUT;
-					resultBuffer.append(evalToken(tokenBuffer, argsBuffer, generatorCache));
-				} else {
-					state = State.ERROR;
-				}
-				break;
-			case TOKEN_ARGS_STARTED:
-				if (isArgEnd(c)) {
-					state = State.TOKEN_ARGS_END;
-				} else if (isStdInput(c)) {
-					state = State.READING_TOKEN_ARGS;
-					argsBuffer.append(c);
-				} else {
-					state = State.ERROR;
-				}
-				break;
-			case READING_TOKEN_ARGS:
-				if (isArgEnd(c)) {
-					state = State.TOKEN_ARGS_END;
-				} else if (isStdInput(c)) {
-					state = State.READING_TOKEN_ARGS;
-					argsBuffer.append(c);
-				} else {
-					state = State.ERROR;
-				}
-				break;
-			case TOKEN_ARGS_END:
-				if (isArgEnd(c)) {
-					state = State.TOKEN_ARGS_END;
-				} else if (isTokenEnd(c)) {
-					state = State.READING_INPUT;
-					resultBuffer.append(evalToken(tokenBuffer, argsBuffer, generatorCache));
-				} else {
-					state = State.ERROR;
-				}
+	/**
+	 * @return the position of the next char at or after from that ends a run
+	 *         of literal text, or end if there is none
+	 */
+	private int skipLiteral(final CharSequence input, final int from, final int end) {
+		final char tokenStart = this.tokenStart;
+		int i = from;
+		while (i < end) {
+			final char c = input.charAt(i);
+			if (c == tokenStart || c == END_OF_STRING) {
 				break;
-
-			case ERROR:
-				error();
-			default:
-				error();
 			}
+			i++;
 		}
+		return i;
+	}
 
-		if (!isFinalStateReached(state)) {
-			error();
+	/**
+	 * same as {@link #skipLiteral(CharSequence, int, int)} for single byte
+	 * delimiters
+	 */
+	private int skipLiteral(final ByteBuffer input, final int from, final int end) {
+		final byte tokenStart = (byte) this.tokenStart;
+		int i = from;
+		while (i < end) {
+			final byte b = input.get(i);
+			if (b == tokenStart || b == END_OF_STRING) {
+				break;
+			}
+			i++;
 		}
+		return i;
+	}
 
-		return resultBuffer.toString();
+	/**
+	 * @return the position of the char or the length of the string if it is
+	 *         not found
+	 */
+	private static int indexOf(final String string, final char c, final int from) {
+		final int index = string.indexOf(c, from);
+		return index < 0 ? string.length() : index;
 	}
 
-	private void error() {
-		throw new ParseException(
-				"Invalid input. The given String could not be parsed. Please check if all tokens, brackets etc. are correct.");
+	void error(long position) {
+		throw failure(new ParseException(String.format(
+				"Invalid input at position %d. The given String could not be parsed. Please check if all tokens, brackets etc. are correct.",
+				position), position));
 	}
 
 	private boolean isFinalStateReached(State state) {
@@ -199,61 +1806,288 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	}
 
 	protected String[] extractArgs(final String tokenName, final StringBuilder args) {
-		if (args.length() == 0) {
-			return new String[] {};
+		final int length = args.length();
+		if (length == 0) {
+			return NO_ARGS;
 		}
 		checkArgumentsAreValid(tokenName, args);
-		String[] argsResult = args.toString().split(String.valueOf(this.argsSep));
+		int count = 1;
+		for (int i = 0; i < length; i++) {
+			if (args.charAt(i) == this.argsSep) {
+				count++;
+			}
+		}
+		final String[] argsResult = new String[count];
+		int argStart = 0;
+		int arg = 0;
+		for (int i = 0; i < length; i++) {
+			if (args.charAt(i) == this.argsSep) {
+				argsResult[arg++] = args.substring(argStart, i);
+				argStart = i + 1;
+			}
+		}
+		argsResult[arg] = args.substring(argStart, length);
 		return argsResult;
 	}
 
 	/**
-	 * stuff like {dynamic(1,)} or {dynamic(1,2,)} seems to be invalid TODO do
-	 * proper parsing instead of regex
+	 * stuff like {dynamic(1,)} or {dynamic(,1)} is invalid, empty arguments
+	 * in between like {dynamic(1,,2)} are passed on as empty strings
 	 */
 	protected void checkArgumentsAreValid(final String tokenName, final StringBuilder args) {
-		if (args.length() > 0 && (args.toString().matches("^,.*") || args.toString().matches(".*,$"))) {
-			throw new ParseException(String.format("the given arguments '%s' for token '%s' seem to be incorrect!",
-					args.toString(), tokenName));
+		final int length = args.length();
+		if (length > 0 && (args.charAt(0) == this.argsSep || args.charAt(length - 1) == this.argsSep)) {
+			throw failure(new ParseException(String.format(
+					"the given arguments '%s' for token '%s' seem to be incorrect!", args.toString(), tokenName)));
 		}
 	}
 
 	protected String evalToken(final StringBuilder token, final StringBuilder args,
 			final Map<String, String> generatorCache) {
-		final String tokenName = token.toString();
+		return evalToken(token, args, 0, generatorCache);
+	}
+
+	/**
+	 * @param dialect
+	 *            the dialect the token was written in, a missing value is
+	 *            kept in the same dialect
+	 */
+	String evalToken(final StringBuilder token, final StringBuilder args, final int dialect,
+			final Map<String, String> generatorCache) {
+		// looked up straight from the buffer, the name of a registered token
+		// is taken from the token so no String is created
+		final Token registered = this.tokenTable.get(token);
+		if (registered == null) {
+			final String value = getDictionaryValue(token, args.length());
+			if (value != null) {
+				return value;
+			}
+			missingToken(token, args);
+			return tokenWithPossibleArguments(token, args, dialect);
+		}
+		return evalRegisteredToken(registered, args, generatorCache, null);
+	}
+
+	private String evalRegisteredToken(final Token registered, final StringBuilder args,
+			final Map<String, String> generatorCache, final NestedExpansion expansion) {
+		final String tokenName = registered.getToken();
 		final String[] argsResult = extractArgs(tokenName, args);
-		if (!this.tokens.containsKey(tokenName)) {
+		fireToken(tokenName, true);
+		return getExpandedValue(registered, argsResult, generatorCache, expansion);
+	}
+
+	/**
+	 * @param expansion
+	 *            null if the value is not expanded
+	 */
+	private String getExpandedValue(final Token token, final String[] args, final Map<String, String> generatorCache,
+			final NestedExpansion expansion) {
+		if (expansion == null) {
+			return getGeneratorValue(token, args, generatorCache);
+		}
+		// the key is taken before the generator might change the arguments
+		final String key = Utils.cacheKey(token.getToken(), args);
+		final String expanded = expansion.getExpanded(key);
+		if (expanded != null) {
+			return expanded;
+		}
+		return expansion.expand(token, key, getGeneratorValue(token, args, generatorCache));
+	}
+
+	/**
+	 * validates the arguments of a token that is not registered and reports
+	 * it, returns only if missing values are ignored
+	 */
+	private void missingToken(final StringBuilder token, final StringBuilder args) {
+		final int length = args.length();
+		// the name is only needed for the message
+		if (length > 0 && (args.charAt(0) == this.argsSep || args.charAt(length - 1) == this.argsSep)) {
+			checkArgumentsAreValid(token.toString(), args);
+		}
+		if (!this.ignoreMissingValues) {
+			throw failure(new NoValueOrGeneratorFoundException(String.format(
+					"no value or generator for token '%s' found!", token)));
+		}
+		if (this.listener != null) {
+			fireToken(token.toString(), false);
+		}
+	}
+
+	/**
+	 * resolves a token of a {@link CompiledTemplate}, the arguments were
+	 * already validated and split when the template was compiled.
+	 */
+	String evalCompiledToken(final String tokenName, final String[] args, final String unresolved,
+			final Map<String, String> generatorCache, final NestedExpansion expansion) {
+		final Token registered = this.tokenTable.get(tokenName);
+		if (registered == null) {
+			final String value = getDictionaryValue(tokenName, args.length);
+			if (value != null) {
+				return value;
+			}
 			if (this.ignoreMissingValues) {
-				return tokenWithPossibleArguments(token, args);
+				fireToken(tokenName, false);
+				return unresolved;
 			} else {
-				throw new NoValueOrGeneratorFoundException(String.format("no value or generator for token '%s' found!",
-						tokenName));
+				throw failure(new NoValueOrGeneratorFoundException(String.format(
+						"no value or generator for token '%s' found!", tokenName)));
 			}
 		}
-		return getGeneratorValue(tokenName, argsResult, generatorCache);
+		fireToken(tokenName, true);
+		return getExpandedValue(registered, args, generatorCache, expansion);
+	}
+
+	/**
+	 * looks the token up in the {@link CompactDictionary}, tokens with
+	 * arguments are not looked up
+	 * 
+	 * @return the value or null if there is none
+	 */
+	private String getDictionaryValue(final CharSequence token, final int args) {
+		final CompactDictionary dictionary = this.dictionary;
+		if (dictionary == null || args > 0) {
+			return null;
+		}
+		final int entry = dictionary.find(token);
+		if (entry < 0) {
+			return null;
+		}
+		if (this.listener != null) {
+			fireToken(token.toString(), true);
+		}
+		return dictionary.getValue(entry);
+	}
+
+	/**
+	 * same as {@link #getDictionaryValue(CharSequence, int)} but appends the
+	 * value straight from the dictionary
+	 * 
+	 * @return the number of chars appended or -1 if there is no value
+	 */
+	private int appendDictionaryValue(final StringBuilder token, final StringBuilder args, final Appendable out)
+			throws IOException {
+		final CompactDictionary dictionary = this.dictionary;
+		if (dictionary == null || args.length() > 0) {
+			return -1;
+		}
+		final int entry = dictionary.find(token);
+		if (entry < 0) {
+			return -1;
+		}
+		if (this.listener != null) {
+			fireToken(token.toString(), true);
+		}
+		return dictionary.appendValue(entry, out);
+	}
+
+	private void fireToken(final String tokenName, final boolean resolved) {
+		final ReplacerListener listener = this.listener;
+		if (listener != null) {
+			listener.onToken(tokenName, resolved);
+		}
+	}
+
+	/**
+	 * reports the exception to the {@link ReplacerListener}
+	 * 
+	 * @return the given exception so it can be thrown by the caller
+	 */
+	RuntimeException failure(final RuntimeException exception) {
+		final ReplacerListener listener = this.listener;
+		if (listener != null) {
+			listener.onFailure(exception);
+		}
+		return exception;
+	}
+
+	/**
+	 * calls the generator of the token and reports its latency to the
+	 * {@link ReplacerListener}
+	 */
+	private String generate(final Token token, final String[] args) {
+		final ReplacerListener listener = this.listener;
+		if (listener == null || token.hasStaticValue()) {
+			return token.getStatelessGenerator().generate(args);
+		}
+		final long started = System.nanoTime();
+		final String value = token.getStatelessGenerator().generate(args);
+		listener.onGenerator(token.getToken(), System.nanoTime() - started);
+		return value;
 	}
 
-	private String getGeneratorValue(final String tokenName, final String[] args,
+	private String getGeneratorValue(final Token token, final String[] args,
 			final Map<String, String> generatorCache) {
-		String value = null;
-		if (this.generatorCachingEnabled && generatorCache.containsKey(tokenName)) {
-			return generatorCache.get(tokenName);
+		// the cache is null if caching was disabled when the call started
+		final boolean cachingEnabled = this.generatorCachingEnabled && generatorCache != null;
+		String key = null;
+		if (cachingEnabled) {
+			key = Utils.cacheKey(token.getToken(), args);
+			if (generatorCache.containsKey(key)) {
+				return generatorCache.get(key);
+			}
+		}
+		final GeneratorCache sharedCache = token.hasStaticValue() ? null : this.sharedGeneratorCache;
+		// either way the generator is called at most once, also if it
+		// returns null
+		final String value = sharedCache != null ? getSharedGeneratorValue(sharedCache, token, args) : generate(
+				token, args);
+		if (cachingEnabled) {
+			if (generatorCache instanceof ConcurrentMap) {
+				// shared by the chunks of a parallel substitution, the first
+				// value stored wins so all chunks use the same value
+				if (value != null) {
+					final String previous = ((ConcurrentMap<String, String>) generatorCache).putIfAbsent(key, value);
+					return previous != null ? previous : value;
+				}
+			} else {
+				generatorCache.put(key, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return the value from the {@link GeneratorCache} or, if it was not
+	 *         cached yet, from the generator
+	 */
+	private String getSharedGeneratorValue(final GeneratorCache cache, final Token token, final String[] args) {
+		final String cached = cache.get(token.getToken(), args);
+		if (cached != null) {
+			return cached;
 		}
-		final Generator generator = this.tokens.get(tokenName).getGenerator();
-		generator.inject(args);
-		value = generator.generate();
-		if (this.generatorCachingEnabled) {
-			generatorCache.put(tokenName, value);
+		// the generator might change the arguments, the cache needs the
+		// original ones
+		final String[] originalArgs = args.clone();
+		final String value = generate(token, args);
+		if (value != null) {
+			cache.put(token.getToken(), originalArgs, value);
 		}
 		return value;
 	}
 
-	private String tokenWithPossibleArguments(final StringBuilder token, final StringBuilder args) {
+	private String tokenWithPossibleArguments(final StringBuilder token, final StringBuilder args, final int dialect) {
+		final StringBuilder unresolved = new StringBuilder(token.length() + args.length() + 4);
+		try {
+			appendTokenWithPossibleArguments(unresolved, token, args, dialect);
+		} catch (IOException e) {
+			throw new IllegalStateException("a StringBuilder does not throw IOExceptions", e);
+		}
+		return unresolved.toString();
+	}
+
+	/**
+	 * @return the number of chars appended
+	 */
+	private int appendTokenWithPossibleArguments(final Appendable out, final StringBuilder token,
+			final StringBuilder args, final int dialect) throws IOException {
+		final String tokenStart = this.delimiters.getStart(dialect);
+		final String tokenEnd = this.delimiters.getEnd(dialect);
+		out.append(tokenStart).append(token);
 		if (args.length() > 0) {
-			return this.tokenStart + token.toString() + this.argsStart + args + this.argsEnd + this.tokenEnd;
-		} else {
-			return this.tokenStart + token.toString() + this.tokenEnd;
+			out.append(this.argsStart).append(args).append(this.argsEnd);
 		}
+		out.append(tokenEnd);
+		return tokenStart.length() + token.length() + tokenEnd.length() + (args.length() > 0 ? args.length() + 2 : 0);
 	}
 
 	/*
@@ -280,8 +2114,16 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	@Override
 	public TokenReplacer register(final Token token) {
 		Validate.notNull(token);
-		Validate.notNull(token.getGenerator(), "please specifiy a value or a generator for the token!");
+		Validate.notNull(token.getStatelessGenerator(), "please specifiy a value or a generator for the token!");
 		this.tokens.put(token.getToken(), token);
+		this.tokenTable.put(token);
+		this.literalAutomaton = null;
+		this.registrations++;
+		// the values of the previous generator must not be used anymore
+		final GeneratorCache cache = this.sharedGeneratorCache;
+		if (cache != null) {
+			cache.invalidate(token.getToken());
+		}
 		return this;
 	}
 
@@ -299,6 +2141,20 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 		return this.register(new Token(token).replacedBy(generator));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#register(java.lang.String,
+	 * de.marcelsauer.tokenreplacer.StatelessGenerator)
+	 */
+	@Override
+	public TokenReplacer register(String token, StatelessGenerator generator) {
+		Validate.notEmpty(token);
+		Validate.notNull(generator);
+		return this.register(new Token(token).replacedBy(generator));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -308,8 +2164,13 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	 */
 	@Override
 	public TokenReplacer withTokenStart(String tokenStart) {
-		ensureOneChar(tokenStart);
-		this.tokenStart = tokenStart.charAt(0);
+		ensureValidDelimiter(tokenStart);
+		ensureNoArgumentChar(tokenStart);
+		if (tokenStart.length() == 1) {
+			this.tokenStart = tokenStart.charAt(0);
+		}
+		this.delimiters = this.delimiters.withFirst(tokenStart, null);
+		invalidateTemplates();
 		return this;
 	}
 
@@ -321,11 +2182,65 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	 */
 	@Override
 	public TokenReplacer withTokenEnd(String tokenEnd) {
-		ensureOneChar(tokenEnd);
-		this.tokenEnd = tokenEnd.charAt(0);
+		ensureValidDelimiter(tokenEnd);
+		ensureNoArgumentChar(tokenEnd);
+		if (tokenEnd.length() == 1) {
+			this.tokenEnd = tokenEnd.charAt(0);
+		}
+		this.delimiters = this.delimiters.withFirst(null, tokenEnd);
+		invalidateTemplates();
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withAdditionalTokenDelimiters
+	 * (java.lang.String, java.lang.String)
+	 */
+	@Override
+	public TokenReplacer withAdditionalTokenDelimiters(String tokenStart, String tokenEnd) {
+		ensureValidDelimiter(tokenStart);
+		ensureValidDelimiter(tokenEnd);
+		ensureNoArgumentChar(tokenStart);
+		ensureNoArgumentChar(tokenEnd);
+		this.delimiters = this.delimiters.withAdditional(tokenStart, tokenEnd);
+		invalidateTemplates();
 		return this;
 	}
 
+	/**
+	 * the cached templates were parsed with the old delimiters
+	 */
+	private void invalidateTemplates() {
+		final TemplateCache cache = this.templateCache;
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	private void ensureValidDelimiter(String delimiter) {
+		Validate.notEmpty(delimiter);
+		Validate.isTrue(delimiter.indexOf(END_OF_STRING) < 0, "a token delimiter must not contain '\\0'!");
+	}
+
+	/**
+	 * a token delimiter must not contain the argument delimiters, they could
+	 * not be told apart within a token otherwise
+	 */
+	private void ensureNoArgumentChar(String delimiter) {
+		for (char c : new char[] { this.argsStart, this.argsEnd, this.argsSep }) {
+			Validate.isTrue(delimiter.indexOf(c) < 0,
+					String.format("the token delimiter '%s' must not contain the argument delimiter '%s'", delimiter, c));
+		}
+	}
+
+	private void ensureNotInTokenDelimiters(String character) {
+		Validate.isTrue(!this.delimiters.contains(character.charAt(0)), String.format(
+				"the argument delimiter '%s' must not be part of a token delimiter", character));
+	}
+
 	protected void ensureOneChar(String character) {
 		if (character.length() != 1) {
 			throw new IllegalArgumentException(String.format("the given string '%s' must be exactly of size 1",
@@ -343,7 +2258,9 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	@Override
 	public TokenReplacer withArgumentDelimiter(String argsSep) {
 		ensureOneChar(argsSep);
+		ensureNotInTokenDelimiters(argsSep);
 		this.argsSep = argsSep.charAt(0);
+		invalidateTemplates();
 		return this;
 	}
 
@@ -357,7 +2274,9 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	@Override
 	public TokenReplacer withArgumentStart(String argsStart) {
 		ensureOneChar(argsStart);
+		ensureNotInTokenDelimiters(argsStart);
 		this.argsStart = argsStart.charAt(0);
+		invalidateTemplates();
 		return this;
 	}
 
@@ -371,7 +2290,9 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 	@Override
 	public TokenReplacer withArgumentEnd(String argsEnd) {
 		ensureOneChar(argsEnd);
+		ensureNotInTokenDelimiters(argsEnd);
 		this.argsEnd = argsEnd.charAt(0);
+		invalidateTemplates();
 		return this;
 	}
 
@@ -420,6 +2341,149 @@ public class FiniteStateMachineTokenReplacer implements TokenReplacer {
 		return this;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#enableNestedExpansion(int)
+	 */
+	@Override
+	public TokenReplacer enableNestedExpansion(int maxDepth) {
+		Validate.isTrue(maxDepth > 0, "the maximum depth must be greater than 0!");
+		this.maxExpansionDepth = maxDepth;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#disableNestedExpansion()
+	 */
+	@Override
+	public TokenReplacer disableNestedExpansion() {
+		this.maxExpansionDepth = 0;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withGeneratorCache(de.marcelsauer
+	 * .tokenreplacer.GeneratorCache)
+	 */
+	@Override
+	public TokenReplacer withGeneratorCache(GeneratorCache cache) {
+		Validate.notNull(cache);
+		this.sharedGeneratorCache = cache;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withDictionary(de.marcelsauer
+	 * .tokenreplacer.CompactDictionary)
+	 */
+	@Override
+	public TokenReplacer withDictionary(CompactDictionary dictionary) {
+		Validate.notNull(dictionary);
+		this.dictionary = dictionary;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutDictionary()
+	 */
+	@Override
+	public TokenReplacer withoutDictionary() {
+		this.dictionary = null;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutGeneratorCache()
+	 */
+	@Override
+	public TokenReplacer withoutGeneratorCache() {
+		this.sharedGeneratorCache = null;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withTemplateCache(int)
+	 */
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize) {
+		return withTemplateCache(maximumSize, Long.MAX_VALUE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withTemplateCache(int,
+	 * long)
+	 */
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize, long maximumChars) {
+		this.templateCache = new TemplateCache(maximumSize, maximumChars);
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutTemplateCache()
+	 */
+	@Override
+	public TokenReplacer withoutTemplateCache() {
+		this.templateCache = null;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#getTemplateCacheStats()
+	 */
+	@Override
+	public TemplateCacheStats getTemplateCacheStats() {
+		final TemplateCache cache = this.templateCache;
+		return cache != null ? cache.getStats() : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withListener(de.marcelsauer.
+	 * tokenreplacer.ReplacerListener)
+	 */
+	@Override
+	public TokenReplacer withListener(ReplacerListener listener) {
+		Validate.notNull(listener);
+		this.listener = listener;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutListener()
+	 */
+	@Override
+	public TokenReplacer withoutListener() {
+		this.listener = null;
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
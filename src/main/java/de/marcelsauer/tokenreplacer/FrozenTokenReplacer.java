@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * an immutable {@link TokenReplacer} created via {@link TokenReplacer#freeze()}.
+ * the tokens and settings are copied into a private
+ * {@link FiniteStateMachineTokenReplacer} inside the constructor and only
+ * reachable through a final field, so the copy is safely published to every
+ * thread that sees the instance (JLS 17.5). all substitutions only read that
+ * copy, so one instance can be shared between threads without locking. all
+ * methods that would change the replacer throw an
+ * {@link UnsupportedOperationException}.
+ *
+ * @author msauer
+ */
+final class FrozenTokenReplacer implements TokenReplacer {
+
+	private final FiniteStateMachineTokenReplacer impl;
+
+	FrozenTokenReplacer(FiniteStateMachineTokenReplacer source) {
+		this.impl = new FiniteStateMachineTokenReplacer(source);
+	}
+
+	@Override
+	public String substitute(String toSubstitute) {
+		return this.impl.substitute(toSubstitute);
+	}
+
+	@Override
+	public String substitute(String template, Object... values) {
+		return this.impl.substitute(template, values);
+	}
+
+	@Override
+	public void substituteTo(CharSequence in, Appendable out) throws IOException {
+		this.impl.substituteTo(in, out);
+	}
+
+	@Override
+	public String substituteLiterals(String toSubstitute) {
+		return this.impl.substituteLiterals(toSubstitute);
+	}
+
+	@Override
+	public void substituteLiteralsTo(CharSequence in, Appendable out) throws IOException {
+		this.impl.substituteLiteralsTo(in, out);
+	}
+
+	@Override
+	public Substitutor newSubstitutor() {
+		return this.impl.newSubstitutor();
+	}
+
+	@Override
+	public ChunkSubstitutor newChunkSubstitutor() {
+		return this.impl.newChunkSubstitutor();
+	}
+
+	@Override
+	public BatchResult substituteAll(List<String> toSubstitute) {
+		return this.impl.substituteAll(toSubstitute);
+	}
+
+	@Override
+	public BatchResult substituteAll(List<String> toSubstitute, ExecutorService executor) {
+		return this.impl.substituteAll(toSubstitute, executor);
+	}
+
+	@Override
+	public String substituteParallel(String toSubstitute, ExecutorService executor) {
+		return this.impl.substituteParallel(toSubstitute, executor);
+	}
+
+	@Override
+	public Future<String> substituteAsync(String toSubstitute, ExecutorService executor) {
+		return this.impl.substituteAsync(toSubstitute, executor);
+	}
+
+	@Override
+	public void substitute(Reader in, Writer out) throws IOException {
+		this.impl.substitute(in, out);
+	}
+
+	@Override
+	public void substitute(InputStream in, OutputStream out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	@Override
+	public void substitute(File in, File out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	@Override
+	public byte[] substitute(byte[] in, Charset charset) {
+		return this.impl.substitute(in, charset);
+	}
+
+	@Override
+	public void substitute(ByteBuffer in, OutputStream out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	@Override
+	public CompiledTemplate compile(String template) {
+		return this.impl.compile(template);
+	}
+
+	@Override
+	public TokenReplacer freeze() {
+		return this;
+	}
+
+	@Override
+	public TokenReplacer register(String token, String value) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer register(Token token) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer register(String token, Generator Generator) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer register(String token, StatelessGenerator generator) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer register(String[] replacements) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withTokenStart(String tokenStart) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withTokenEnd(String tokenEnd) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withAdditionalTokenDelimiters(String tokenStart, String tokenEnd) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withArgumentDelimiter(String argsSep) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withArgumentStart(String argsStart) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withArgumentEnd(String argsEnd) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer doNotIgnoreMissingValues() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer ignoreMissingValues() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer enableGeneratorCaching() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer disableGeneratorCaching() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer enableNestedExpansion(int maxDepth) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer disableNestedExpansion() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withGeneratorCache(GeneratorCache cache) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withoutGeneratorCache() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withDictionary(CompactDictionary dictionary) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withoutDictionary() {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize, long maximumChars) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withoutTemplateCache() {
+		throw frozen();
+	}
+
+	@Override
+	public TemplateCacheStats getTemplateCacheStats() {
+		return this.impl.getTemplateCacheStats();
+	}
+
+	@Override
+	public TokenReplacer withListener(ReplacerListener listener) {
+		throw frozen();
+	}
+
+	@Override
+	public TokenReplacer withoutListener() {
+		throw frozen();
+	}
+
+	private UnsupportedOperationException frozen() {
+		return new UnsupportedOperationException("the TokenReplacer is frozen and can not be changed anymore!");
+	}
+
+	@Override
+	public String toString() {
+		return "FrozenTokenReplacer [tokens=" + this.impl.tokens.keySet() + "]";
+	}
+}
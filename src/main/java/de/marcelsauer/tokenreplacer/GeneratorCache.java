@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * keeps the values created by the {@link StatelessGenerator}s and
+ * {@link Generator}s of a {@link TokenReplacer} across calls, see
+ * {@link TokenReplacer#withGeneratorCache(GeneratorCache)}. values are cached
+ * per token name <b>and</b> arguments, so {price(1)} and {price(2)} do not share
+ * a value. static values are never cached.
+ * 
+ * <p>
+ * implementations must be thread safe, a cache may be shared by several
+ * (frozen) replacers. see {@link LruGeneratorCache} for the default
+ * implementation.
+ * </p>
+ * 
+ * @author msauer
+ */
+public interface GeneratorCache {
+
+	/**
+	 * @param tokenName
+	 *            the name of the token, e.g. 'price'
+	 * @param args
+	 *            the arguments of the token, empty if it has none. must not be
+	 *            modified
+	 * @return the cached value or null if there is none (or it expired)
+	 */
+	String get(String tokenName, String[] args);
+
+	/**
+	 * @param tokenName
+	 *            the name of the token, e.g. 'price'
+	 * @param args
+	 *            the arguments of the token, empty if it has none. must not be
+	 *            modified
+	 * @param value
+	 *            the value the generator returned, never null
+	 */
+	void put(String tokenName, String[] args, String value);
+
+	/**
+	 * removes all values of the token, whatever the arguments were. called
+	 * when the token is registered again.
+	 * 
+	 * @param tokenName
+	 *            the name of the token, e.g. 'price'
+	 */
+	void invalidate(String tokenName);
+
+	/**
+	 * removes all values, the statistics are kept
+	 */
+	void clear();
+
+	/**
+	 * @return a snapshot of the statistics of this cache
+	 */
+	GeneratorCacheStats getStats();
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * an immutable snapshot of the statistics of a {@link GeneratorCache}
+ * 
+ * @author msauer
+ */
+public final class GeneratorCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long expirationCount;
+	private final int size;
+
+	public GeneratorCacheStats(long hitCount, long missCount, long evictionCount, long expirationCount, int size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.expirationCount = expirationCount;
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of lookups that returned a cached value
+	 */
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the number of lookups that found no (or an expired) value
+	 */
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * @return the number of values removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * @return the number of values removed because their time to live was
+	 *         over
+	 */
+	public long getExpirationCount() {
+		return this.expirationCount;
+	}
+
+	/**
+	 * @return the number of values currently cached
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return hits / (hits + misses) or 1.0 if there was no lookup yet
+	 */
+	public double getHitRate() {
+		final long lookups = this.hitCount + this.missCount;
+		return lookups == 0 ? 1.0 : (double) this.hitCount / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "GeneratorCacheStats [hitCount=" + this.hitCount + ", missCount=" + this.missCount + ", evictionCount="
+				+ this.evictionCount + ", expirationCount=" + this.expirationCount + ", size=" + this.size + "]";
+	}
+}
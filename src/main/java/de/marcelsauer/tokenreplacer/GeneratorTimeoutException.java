@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * thrown (as cause of an {@link java.util.concurrent.ExecutionException})
+ * when a generator takes longer than the timeout of its token, see
+ * {@link Token#withTimeout(long, java.util.concurrent.TimeUnit)}, and the
+ * token has no fallback value
+ * 
+ * @author msauer
+ */
+public class GeneratorTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public GeneratorTimeoutException (String msg) {
+		super(msg);
+	}
+}
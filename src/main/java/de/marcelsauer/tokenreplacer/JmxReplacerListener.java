@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a {@link ReplacerListener} that counts substitutions, tokens, failures and
+ * generator latencies and exposes them as a standard MBean.
+ * 
+ * <pre>
+ * JmxReplacerListener listener = new JmxReplacerListener();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(listener,
+ * 		new ObjectName(&quot;de.marcelsauer.tokenreplacer:type=Toky,name=mails&quot;));
+ * toky.withListener(listener);
+ * </pre>
+ * 
+ * all counters are updated lock free, so one instance can be shared between
+ * threads and replacers.
+ * 
+ * @author msauer
+ */
+public final class JmxReplacerListener implements ReplacerListener, JmxReplacerListenerMBean {
+
+	private static final long[] LATENCY_BOUNDS_NANOS = { 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+			1000000000L };
+	private static final String[] LATENCY_BUCKETS = { "<1us", "<10us", "<100us", "<1ms", "<10ms", "<100ms", "<1s",
+			">=1s" };
+
+	private final AtomicLong substitutionCount = new AtomicLong();
+	private final AtomicLong substitutionTimeNanos = new AtomicLong();
+	private final AtomicLong inputChars = new AtomicLong();
+	private final AtomicLong outputChars = new AtomicLong();
+	private final AtomicLong parseExceptionCount = new AtomicLong();
+	private final AtomicLong missingValueCount = new AtomicLong();
+	private final AtomicLong generatorTimeoutCount = new AtomicLong();
+	private final AtomicLong otherFailureCount = new AtomicLong();
+	private final ConcurrentMap<String, AtomicLong> tokenCounts = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, AtomicLong> unresolvedTokenCounts = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, GeneratorLatency> generatorLatencies = new ConcurrentHashMap<String, GeneratorLatency>();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.ReplacerListener#onSubstitution(long,
+	 * long, long)
+	 */
+	@Override
+	public void onSubstitution(long inputLength, long outputLength, long durationNanos) {
+		this.substitutionCount.incrementAndGet();
+		this.substitutionTimeNanos.addAndGet(durationNanos);
+		this.inputChars.addAndGet(inputLength);
+		this.outputChars.addAndGet(outputLength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.ReplacerListener#onToken(java.lang.String,
+	 * boolean)
+	 */
+	@Override
+	public void onToken(String tokenName, boolean resolved) {
+		counter(this.tokenCounts, tokenName).incrementAndGet();
+		if (!resolved) {
+			counter(this.unresolvedTokenCounts, tokenName).incrementAndGet();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.ReplacerListener#onGenerator(java.lang.String,
+	 * long)
+	 */
+	@Override
+	public void onGenerator(String tokenName, long durationNanos) {
+		GeneratorLatency latency = this.generatorLatencies.get(tokenName);
+		if (latency == null) {
+			final GeneratorLatency created = new GeneratorLatency();
+			latency = this.generatorLatencies.putIfAbsent(tokenName, created);
+			if (latency == null) {
+				latency = created;
+			}
+		}
+		latency.add(durationNanos);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.ReplacerListener#onFailure(java.lang.RuntimeException
+	 * )
+	 */
+	@Override
+	public void onFailure(RuntimeException exception) {
+		if (exception instanceof NoValueOrGeneratorFoundException) {
+			this.missingValueCount.incrementAndGet();
+		} else if (exception instanceof ParseException) {
+			this.parseExceptionCount.incrementAndGet();
+		} else if (exception instanceof GeneratorTimeoutException) {
+			this.generatorTimeoutCount.incrementAndGet();
+		} else {
+			this.otherFailureCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public long getSubstitutionCount() {
+		return this.substitutionCount.get();
+	}
+
+	@Override
+	public long getSubstitutionTimeNanos() {
+		return this.substitutionTimeNanos.get();
+	}
+
+	@Override
+	public long getInputChars() {
+		return this.inputChars.get();
+	}
+
+	@Override
+	public long getOutputChars() {
+		return this.outputChars.get();
+	}
+
+	@Override
+	public long getParseExceptionCount() {
+		return this.parseExceptionCount.get();
+	}
+
+	@Override
+	public long getMissingValueCount() {
+		return this.missingValueCount.get();
+	}
+
+	@Override
+	public long getGeneratorTimeoutCount() {
+		return this.generatorTimeoutCount.get();
+	}
+
+	@Override
+	public long getOtherFailureCount() {
+		return this.otherFailureCount.get();
+	}
+
+	@Override
+	public Map<String, Long> getTokenCounts() {
+		return snapshot(this.tokenCounts);
+	}
+
+	@Override
+	public Map<String, Long> getUnresolvedTokenCounts() {
+		return snapshot(this.unresolvedTokenCounts);
+	}
+
+	@Override
+	public Map<String, Long> getGeneratorAverageNanos() {
+		final Map<String, Long> averages = new TreeMap<String, Long>();
+		for (Map.Entry<String, GeneratorLatency> entry : this.generatorLatencies.entrySet()) {
+			averages.put(entry.getKey(), entry.getValue().getAverageNanos());
+		}
+		return averages;
+	}
+
+	@Override
+	public String[] getGeneratorLatencyBuckets() {
+		return LATENCY_BUCKETS.clone();
+	}
+
+	@Override
+	public long[] getGeneratorLatencyHistogram(String tokenName) {
+		final GeneratorLatency latency = this.generatorLatencies.get(tokenName);
+		return latency == null ? new long[LATENCY_BUCKETS.length] : latency.getHistogram();
+	}
+
+	@Override
+	public void reset() {
+		this.substitutionCount.set(0);
+		this.substitutionTimeNanos.set(0);
+		this.inputChars.set(0);
+		this.outputChars.set(0);
+		this.parseExceptionCount.set(0);
+		this.missingValueCount.set(0);
+		this.generatorTimeoutCount.set(0);
+		this.otherFailureCount.set(0);
+		this.tokenCounts.clear();
+		this.unresolvedTokenCounts.clear();
+		this.generatorLatencies.clear();
+	}
+
+	private static AtomicLong counter(ConcurrentMap<String, AtomicLong> counters, String tokenName) {
+		AtomicLong counter = counters.get(tokenName);
+		if (counter == null) {
+			final AtomicLong created = new AtomicLong();
+			counter = counters.putIfAbsent(tokenName, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counters) {
+		final Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		}
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return "JmxReplacerListener [substitutionCount=" + getSubstitutionCount() + ", parseExceptionCount="
+				+ getParseExceptionCount() + ", missingValueCount=" + getMissingValueCount() + "]";
+	}
+
+	/**
+	 * the calls of the generator of one token
+	 */
+	private static final class GeneratorLatency {
+
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(LATENCY_BUCKETS.length);
+
+		void add(long durationNanos) {
+			this.count.incrementAndGet();
+			this.totalNanos.addAndGet(durationNanos);
+			int bucket = 0;
+			while (bucket < LATENCY_BOUNDS_NANOS.length && durationNanos >= LATENCY_BOUNDS_NANOS[bucket]) {
+				bucket++;
+			}
+			this.histogram.incrementAndGet(bucket);
+		}
+
+		long getAverageNanos() {
+			final long calls = this.count.get();
+			return calls == 0 ? 0 : this.totalNanos.get() / calls;
+		}
+
+		long[] getHistogram() {
+			final long[] result = new long[this.histogram.length()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = this.histogram.get(i);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.Map;
+
+/**
+ * the attributes and operations of a {@link JmxReplacerListener}
+ * 
+ * @author msauer
+ */
+public interface JmxReplacerListenerMBean {
+
+	long getSubstitutionCount();
+
+	long getSubstitutionTimeNanos();
+
+	long getInputChars();
+
+	long getOutputChars();
+
+	long getParseExceptionCount();
+
+	long getMissingValueCount();
+
+	/**
+	 * @return the number of generators that took longer than the timeout of
+	 *         their token, see {@link GeneratorTimeoutException}
+	 */
+	long getGeneratorTimeoutCount();
+
+	/**
+	 * @return the number of failures that are neither parse errors, missing
+	 *         values nor timeouts, e.g. cyclic or too deeply nested values
+	 */
+	long getOtherFailureCount();
+
+	/**
+	 * @return the number of tokens found per token name
+	 */
+	Map<String, Long> getTokenCounts();
+
+	/**
+	 * @return the number of tokens kept as-is because missing values are
+	 *         ignored, per token name
+	 */
+	Map<String, Long> getUnresolvedTokenCounts();
+
+	/**
+	 * @return the average generator latency in nanoseconds per token name
+	 */
+	Map<String, Long> getGeneratorAverageNanos();
+
+	/**
+	 * @return the upper bounds of the buckets of
+	 *         {@link #getGeneratorLatencyHistogram(String)}
+	 */
+	String[] getGeneratorLatencyBuckets();
+
+	/**
+	 * @return the number of generator calls per latency bucket, see
+	 *         {@link #getGeneratorLatencyBuckets()}, for the given token name
+	 */
+	long[] getGeneratorLatencyHistogram(String tokenName);
+
+	/**
+	 * sets all counters to 0
+	 */
+	void reset();
+
+}
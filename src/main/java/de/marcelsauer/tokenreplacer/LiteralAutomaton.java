@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * an Aho-Corasick automaton over plain literal keys, used by
+ * {@link TokenReplacer#substituteLiterals(String)}. the input is scanned once,
+ * at every char the automaton follows a transition or a failure link, so all
+ * keys are searched at the same time. where matches overlap the leftmost one
+ * wins and of those the longest.
+ * 
+ * <p>
+ * the transitions of all states are kept in one open addressed hash table
+ * keyed by state and char. instances are immutable and can be shared between
+ * threads.
+ * </p>
+ * 
+ * @author msauer
+ */
+final class LiteralAutomaton {
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+	private static final long EMPTY = -1;
+
+	// open addressed table of (state << 16 | char) -> next state
+	private final long[] transitionKeys;
+	private final int[] transitionTargets;
+	private final int mask;
+	// the state to continue with if there is no transition for a char
+	private final int[] failure;
+	// the length of the prefix a state stands for
+	private final int[] depth;
+	// the longest key that ends in a state, null if none does
+	private final String[] output;
+
+	/**
+	 * receives the literal text between the matches and the matched keys
+	 */
+	interface MatchHandler {
+
+		/**
+		 * a run of literal text, the chars from start (inclusive) to end
+		 * (exclusive) of the input
+		 */
+		void onText(CharSequence input, int start, int end) throws IOException;
+
+		void onMatch(String key) throws IOException;
+	}
+
+	LiteralAutomaton(Collection<String> keys) {
+		// build the trie
+		final List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+		final List<String> ends = new ArrayList<String>();
+		final List<Integer> depths = new ArrayList<Integer>();
+		children.add(new HashMap<Character, Integer>());
+		ends.add(null);
+		depths.add(0);
+		int transitions = 0;
+		for (String key : keys) {
+			int state = ROOT;
+			for (int i = 0; i < key.length(); i++) {
+				Integer next = children.get(state).get(key.charAt(i));
+				if (next == null) {
+					next = children.size();
+					children.get(state).put(key.charAt(i), next);
+					children.add(new HashMap<Character, Integer>());
+					ends.add(null);
+					depths.add(i + 1);
+					transitions++;
+				}
+				state = next;
+			}
+			ends.set(state, key);
+		}
+
+		final int states = children.size();
+		this.depth = new int[states];
+		this.output = new String[states];
+		this.failure = new int[states];
+		int capacity = 16;
+		while (capacity < 2 * transitions) {
+			capacity <<= 1;
+		}
+		this.mask = capacity - 1;
+		this.transitionKeys = new long[capacity];
+		this.transitionTargets = new int[capacity];
+		Arrays.fill(this.transitionKeys, EMPTY);
+
+		// breadth first, so the failure state (which is shorter) is always
+		// done before the states pointing to it
+		final int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = ROOT;
+		while (head < tail) {
+			final int state = queue[head++];
+			this.depth[state] = depths.get(state);
+			this.output[state] = ends.get(state) != null ? ends.get(state) : this.output[this.failure[state]];
+			for (Map.Entry<Character, Integer> child : children.get(state).entrySet()) {
+				final char c = child.getKey();
+				final int next = child.getValue();
+				put(state, c, next);
+				this.failure[next] = state == ROOT ? ROOT : next(this.failure[state], c);
+				queue[tail++] = next;
+			}
+		}
+	}
+
+	/**
+	 * reports the literal text and the matches of the input in order
+	 */
+	void replace(final CharSequence input, final MatchHandler handler) throws IOException {
+		final int length = input.length();
+		int literalStart = 0;
+		int state = ROOT;
+		// the leftmost longest match so far, not yet reported
+		int matchStart = NONE;
+		int matchEnd = 0;
+		String match = null;
+		int i = 0;
+		while (true) {
+			if (i < length) {
+				state = next(state, input.charAt(i));
+				final String key = this.output[state];
+				i++;
+				if (key != null && (matchStart == NONE || i - key.length() <= matchStart)) {
+					matchStart = i - key.length();
+					matchEnd = i;
+					match = key;
+				}
+				// a match further left (or longer) is only possible while the
+				// current state started at or before the match
+				if (matchStart == NONE || i - this.depth[state] <= matchStart) {
+					continue;
+				}
+			} else if (matchStart == NONE) {
+				break;
+			}
+			if (literalStart < matchStart) {
+				handler.onText(input, literalStart, matchStart);
+			}
+			handler.onMatch(match);
+			literalStart = matchEnd;
+			i = matchEnd;
+			state = ROOT;
+			matchStart = NONE;
+		}
+		if (literalStart < length) {
+			handler.onText(input, literalStart, length);
+		}
+	}
+
+	private int next(final int state, final char c) {
+		int current = state;
+		while (true) {
+			final int next = get(current, c);
+			if (next != NONE) {
+				return next;
+			}
+			if (current == ROOT) {
+				return ROOT;
+			}
+			current = this.failure[current];
+		}
+	}
+
+	private int get(final int state, final char c) {
+		final long key = ((long) state << 16) | c;
+		int slot = slot(key);
+		while (true) {
+			final long candidate = this.transitionKeys[slot];
+			if (candidate == key) {
+				return this.transitionTargets[slot];
+			}
+			if (candidate == EMPTY) {
+				return NONE;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private void put(final int state, final char c, final int next) {
+		final long key = ((long) state << 16) | c;
+		int slot = slot(key);
+		while (this.transitionKeys[slot] != EMPTY) {
+			slot = (slot + 1) & this.mask;
+		}
+		this.transitionKeys[slot] = key;
+		this.transitionTargets[slot] = next;
+	}
+
+	private int slot(final long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & this.mask;
+	}
+
+	@Override
+	public String toString() {
+		return "LiteralAutomaton [states=" + this.depth.length + "]";
+	}
+}
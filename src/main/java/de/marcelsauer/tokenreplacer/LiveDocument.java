@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a rendered {@link CompiledTemplate} that is kept up to date, created via
+ * {@link CompiledTemplate#newLiveDocument()}. the rendered text of every
+ * segment is kept together with the segments that depend on each token. when
+ * values are registered again on the {@link TokenReplacer} only the segments
+ * of those tokens are rendered again by {@link #refresh()}, the rest of the
+ * document is neither parsed nor rendered again.
+ * 
+ * <pre>
+ * LiveDocument dashboard = toky.compile(template).newLiveDocument();
+ * toky.register(&quot;load&quot;, &quot;0.7&quot;);
+ * dashboard.refresh(); // renders the {load} tokens only
+ * dashboard.writeTo(out);
+ * </pre>
+ * 
+ * <p>
+ * a token counts as changed if it was registered again, also with the same
+ * value, or if its value was changed via {@link Token#replacedBy(String)}. a
+ * token that is not registered counts as changed whenever a value was put
+ * into the {@link CompactDictionary} or another dictionary was set.
+ * generators are not called again unless their token changed, use
+ * {@link #refresh(String)} to render the tokens of a generator again. if
+ * nested expansion is enabled a value may depend on any other token, then all
+ * tokens are rendered again once something was registered on the
+ * {@link TokenReplacer}.
+ * </p>
+ * 
+ * <p>
+ * a {@link LiveDocument} <b>IS NOT THREAD SAFE</b>.
+ * </p>
+ * 
+ * @author msauer
+ */
+public final class LiveDocument {
+
+	private final FiniteStateMachineTokenReplacer replacer;
+	private final List<CompiledTemplate.Segment> segments;
+	// the current output of each segment
+	private final String[] rendered;
+	private final Map<String, Dependency> dependencies = new HashMap<String, Dependency>();
+	private int length;
+	// the registrations of the replacer at the last refresh
+	private int registrations;
+	// the whole text, null after a segment changed
+	private String text;
+
+	LiveDocument(FiniteStateMachineTokenReplacer replacer, List<CompiledTemplate.Segment> segments) {
+		this.replacer = replacer;
+		this.segments = segments;
+		this.rendered = new String[segments.size()];
+		final Map<String, List<Integer>> indexes = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < segments.size(); i++) {
+			final String tokenName = segments.get(i).getTokenName();
+			if (tokenName != null) {
+				List<Integer> tokenIndexes = indexes.get(tokenName);
+				if (tokenIndexes == null) {
+					tokenIndexes = new ArrayList<Integer>();
+					indexes.put(tokenName, tokenIndexes);
+				}
+				tokenIndexes.add(i);
+			}
+		}
+		for (Map.Entry<String, List<Integer>> entry : indexes.entrySet()) {
+			final int[] segmentIndexes = new int[entry.getValue().size()];
+			for (int i = 0; i < segmentIndexes.length; i++) {
+				segmentIndexes[i] = entry.getValue().get(i);
+			}
+			this.dependencies.put(entry.getKey(), new Dependency(entry.getKey(), segmentIndexes));
+		}
+		this.registrations = replacer.getRegistrations();
+		final StringBuilder buffer = new StringBuilder();
+		final Map<String, String> generatorCache = replacer.newGeneratorCache();
+		final FiniteStateMachineTokenReplacer.NestedExpansion expansion = replacer.newNestedExpansion(generatorCache);
+		for (int i = 0; i < this.rendered.length; i++) {
+			render(i, buffer, generatorCache, expansion);
+		}
+		for (Dependency dependency : this.dependencies.values()) {
+			dependency.remember(replacer.getRegisteredToken(dependency.tokenName), replacer.getDictionary());
+		}
+	}
+
+	/**
+	 * renders the segments of all tokens that were registered again since the
+	 * last refresh. only the tokens of this document are checked, not the
+	 * whole text.
+	 * 
+	 * @return the number of tokens that were rendered again
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored. the tokens that
+	 *             were not rendered yet are tried again on the next refresh.
+	 */
+	public int refresh() {
+		final StringBuilder buffer = new StringBuilder();
+		final Map<String, String> generatorCache = this.replacer.newGeneratorCache();
+		final FiniteStateMachineTokenReplacer.NestedExpansion expansion = this.replacer
+				.newNestedExpansion(generatorCache);
+		final CompactDictionary dictionary = this.replacer.getDictionary();
+		final int registrations = this.replacer.getRegistrations();
+		// a nested value may depend on any token, not only those of the document
+		final boolean all = expansion != null && registrations != this.registrations;
+		int refreshed = 0;
+		for (Dependency dependency : this.dependencies.values()) {
+			final Token token = this.replacer.getRegisteredToken(dependency.tokenName);
+			if (all || dependency.hasChanged(token, dictionary)) {
+				render(dependency, token, dictionary, buffer, generatorCache, expansion);
+				refreshed++;
+			}
+		}
+		this.registrations = registrations;
+		return refreshed;
+	}
+
+	/**
+	 * renders the segments of the given token again, e.g. to call its
+	 * generator again
+	 * 
+	 * @param tokenName
+	 *            the name of the token, must not be null
+	 * @return true if the document contains the token
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for
+	 *             the token and missing values are not ignored
+	 */
+	public boolean refresh(String tokenName) {
+		Validate.notNull(tokenName);
+		final Dependency dependency = this.dependencies.get(tokenName);
+		if (dependency == null) {
+			return false;
+		}
+		final Map<String, String> generatorCache = this.replacer.newGeneratorCache();
+		render(dependency, this.replacer.getRegisteredToken(tokenName), this.replacer.getDictionary(),
+				new StringBuilder(), generatorCache, this.replacer.newNestedExpansion(generatorCache));
+		return true;
+	}
+
+	/**
+	 * @return the number of chars of the whole document
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * @return the whole document, the text is only put together again after
+	 *         a segment changed
+	 */
+	public String getText() {
+		if (this.text == null) {
+			final StringBuilder text = new StringBuilder(this.length);
+			for (String segment : this.rendered) {
+				text.append(segment);
+			}
+			this.text = text.toString();
+		}
+		return this.text;
+	}
+
+	/**
+	 * appends the whole document segment by segment without putting it
+	 * together first
+	 * 
+	 * @param out
+	 *            must not be null
+	 * @throws IOException
+	 *             when appending to the output fails
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		Validate.notNull(out);
+		if (this.text != null) {
+			out.append(this.text);
+			return;
+		}
+		for (String segment : this.rendered) {
+			out.append(segment);
+		}
+	}
+
+	private void render(Dependency dependency, Token token, CompactDictionary dictionary, StringBuilder buffer,
+			Map<String, String> generatorCache, FiniteStateMachineTokenReplacer.NestedExpansion expansion) {
+		for (int index : dependency.segmentIndexes) {
+			render(index, buffer, generatorCache, expansion);
+		}
+		dependency.remember(token, dictionary);
+	}
+
+	private void render(int index, StringBuilder buffer, Map<String, String> generatorCache,
+			FiniteStateMachineTokenReplacer.NestedExpansion expansion) {
+		buffer.setLength(0);
+		this.segments.get(index).render(this.replacer, buffer, generatorCache, expansion, null);
+		final String segment = buffer.toString();
+		final String previous = this.rendered[index];
+		if (previous != null) {
+			if (previous.equals(segment)) {
+				return;
+			}
+			this.length -= previous.length();
+		}
+		this.rendered[index] = segment;
+		this.length += segment.length();
+		this.text = null;
+	}
+
+	@Override
+	public String toString() {
+		return "LiveDocument [length=" + this.length + ", tokens=" + this.dependencies.keySet() + "]";
+	}
+
+	/**
+	 * the segments of one token and the registration they were rendered with
+	 */
+	private static final class Dependency {
+
+		private final String tokenName;
+		private final int[] segmentIndexes;
+		private Token token;
+		// changes when the value of the token is replaced in place
+		private StatelessGenerator generator;
+		// the dictionary a token that is not registered was looked up in
+		private CompactDictionary dictionary;
+		private long dictionaryModifications;
+
+		Dependency(String tokenName, int[] segmentIndexes) {
+			this.tokenName = tokenName;
+			this.segmentIndexes = segmentIndexes;
+		}
+
+		boolean hasChanged(Token token, CompactDictionary dictionary) {
+			if (token != this.token) {
+				return true;
+			}
+			if (token != null) {
+				return token.getStatelessGenerator() != this.generator;
+			}
+			// registered tokens take precedence, only unregistered ones
+			// depend on the dictionary
+			return dictionary != this.dictionary
+					|| (dictionary != null && dictionary.getModifications() != this.dictionaryModifications);
+		}
+
+		void remember(Token token, CompactDictionary dictionary) {
+			this.token = token;
+			this.generator = token != null ? token.getStatelessGenerator() : null;
+			this.dictionary = dictionary;
+			this.dictionaryModifications = dictionary != null ? dictionary.getModifications() : 0;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a {@link GeneratorCache} holding at most a given number of values. when it is
+ * full the least recently used value is evicted. values can expire after a
+ * time to live, either for all tokens or per token.
+ * 
+ * <pre>
+ * GeneratorCache cache = new LruGeneratorCache(10000).withTimeToLive(1, TimeUnit.MINUTES).withTimeToLive(&quot;fxRate&quot;, 5,
+ * 		TimeUnit.SECONDS);
+ * toky.withGeneratorCache(cache);
+ * </pre>
+ * 
+ * all methods are synchronized, so the cache can be shared between threads.
+ * concurrent misses for the same token may call the generator more than once.
+ * 
+ * @author msauer
+ */
+public final class LruGeneratorCache implements GeneratorCache {
+
+	private static final long NEVER = -1;
+
+	private final int maximumSize;
+	private final Map<String, Long> timeToLiveByToken = new HashMap<String, Long>();
+	private final Map<String, CachedValue> entries;
+	// the number of cached values per token, a token without values is
+	// invalidated without looking at the entries
+	private final Map<String, Integer> sizeByToken = new HashMap<String, Integer>();
+	private long defaultTimeToLive = NEVER;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long expirationCount;
+
+	/**
+	 * @param maximumSize
+	 *            the number of values kept at most, must be greater than 0
+	 */
+	public LruGeneratorCache(final int maximumSize) {
+		Validate.isTrue(maximumSize > 0, "the maximum size must be greater than 0!");
+		this.maximumSize = maximumSize;
+		this.entries = new LinkedHashMap<String, CachedValue>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedValue> eldest) {
+				if (size() > LruGeneratorCache.this.maximumSize) {
+					LruGeneratorCache.this.evictionCount++;
+					removed(eldest.getValue().tokenName);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param duration
+	 *            how long a value of any token is used, must not be negative
+	 * @return the {@link LruGeneratorCache} to allow method chaining
+	 */
+	public synchronized LruGeneratorCache withTimeToLive(final long duration, final TimeUnit unit) {
+		this.defaultTimeToLive = toNanos(duration, unit);
+		return this;
+	}
+
+	/**
+	 * @param tokenName
+	 *            the token the time to live is used for, overrides
+	 *            {@link #withTimeToLive(long, TimeUnit)}
+	 * @param duration
+	 *            how long a value of the token is used, 0 to not cache the
+	 *            token at all. must not be negative
+	 * @return the {@link LruGeneratorCache} to allow method chaining
+	 */
+	public synchronized LruGeneratorCache withTimeToLive(final String tokenName, final long duration,
+			final TimeUnit unit) {
+		Validate.notEmpty(tokenName);
+		this.timeToLiveByToken.put(tokenName, toNanos(duration, unit));
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.GeneratorCache#get(java.lang.String,
+	 * java.lang.String[])
+	 */
+	@Override
+	public synchronized String get(final String tokenName, final String[] args) {
+		final String key = Utils.cacheKey(tokenName, args);
+		final CachedValue cachedValue = this.entries.get(key);
+		if (cachedValue == null) {
+			this.missCount++;
+			return null;
+		}
+		if (cachedValue.isExpired(System.nanoTime())) {
+			this.entries.remove(key);
+			removed(tokenName);
+			this.expirationCount++;
+			this.missCount++;
+			return null;
+		}
+		this.hitCount++;
+		return cachedValue.value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.GeneratorCache#put(java.lang.String,
+	 * java.lang.String[], java.lang.String)
+	 */
+	@Override
+	public synchronized void put(final String tokenName, final String[] args, final String value) {
+		final Long tokenTimeToLive = this.timeToLiveByToken.get(tokenName);
+		final long timeToLive = tokenTimeToLive != null ? tokenTimeToLive.longValue() : this.defaultTimeToLive;
+		if (timeToLive == 0) {
+			return;
+		}
+		final CachedValue previous = this.entries.put(Utils.cacheKey(tokenName, args), new CachedValue(tokenName,
+				value, timeToLive, System.nanoTime()));
+		if (previous == null) {
+			final Integer size = this.sizeByToken.get(tokenName);
+			this.sizeByToken.put(tokenName, size == null ? 1 : size.intValue() + 1);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.GeneratorCache#invalidate(java.lang.String)
+	 */
+	@Override
+	public synchronized void invalidate(final String tokenName) {
+		if (this.sizeByToken.remove(tokenName) == null) {
+			return;
+		}
+		final Iterator<CachedValue> values = this.entries.values().iterator();
+		while (values.hasNext()) {
+			if (values.next().tokenName.equals(tokenName)) {
+				values.remove();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.GeneratorCache#clear()
+	 */
+	@Override
+	public synchronized void clear() {
+		this.entries.clear();
+		this.sizeByToken.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.GeneratorCache#getStats()
+	 */
+	@Override
+	public synchronized GeneratorCacheStats getStats() {
+		return new GeneratorCacheStats(this.hitCount, this.missCount, this.evictionCount, this.expirationCount,
+				this.entries.size());
+	}
+
+	private void removed(final String tokenName) {
+		final int size = this.sizeByToken.get(tokenName).intValue();
+		if (size == 1) {
+			this.sizeByToken.remove(tokenName);
+		} else {
+			this.sizeByToken.put(tokenName, size - 1);
+		}
+	}
+
+	private static long toNanos(final long duration, final TimeUnit unit) {
+		Validate.isTrue(duration >= 0, "the time to live must not be negative!");
+		Validate.notNull(unit);
+		return unit.toNanos(duration);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LruGeneratorCache [maximumSize=" + this.maximumSize + ", stats=" + getStats() + "]";
+	}
+
+	private static final class CachedValue {
+
+		private final String tokenName;
+		private final String value;
+		private final long timeToLive;
+		private final long created;
+
+		CachedValue(String tokenName, String value, long timeToLive, long created) {
+			this.tokenName = tokenName;
+			this.value = value;
+			this.timeToLive = timeToLive;
+			this.created = created;
+		}
+
+		boolean isExpired(long now) {
+			// compare the elapsed time, System.nanoTime() may overflow
+			return this.timeToLive != NEVER && now - this.created >= this.timeToLive;
+		}
+	}
+}
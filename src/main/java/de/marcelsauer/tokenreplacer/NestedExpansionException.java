@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * thrown when the values of nested tokens (see
+ * {@link TokenReplacer#enableNestedExpansion(int)}) are nested deeper than
+ * allowed
+ * 
+ * @author msauer
+ */
+public class NestedExpansionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<String> path;
+
+	/**
+	 * @param path
+	 *            the tokens that were being expanded, outermost first
+	 */
+	public NestedExpansionException (String msg, List<String> path) {
+		super(msg);
+		this.path = Collections.unmodifiableList(new ArrayList<String>(path));
+	}
+
+	/**
+	 * @return the tokens that were being expanded, outermost first
+	 */
+	public List<String> getPath () {
+		return this.path;
+	}
+}
@@ -23,7 +23,27 @@ public class ParseException extends RuntimeException {
 
 	private static final long serialVersionUID = 1L;
 
+	private final long position;
+
 	public ParseException (String msg) {
+		this(msg, -1);
+	}
+
+	/**
+	 * @param position
+	 *            the position of the char (or byte when substituting bytes)
+	 *            within the input at which parsing failed
+	 */
+	public ParseException (String msg, long position) {
 		super(msg);
+		this.position = position;
+	}
+
+	/**
+	 * @return the position of the char (or byte when substituting bytes)
+	 *         within the input at which parsing failed, -1 if unknown
+	 */
+	public long getPosition () {
+		return this.position;
 	}
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * receives measurements of a {@link TokenReplacer}, see
+ * {@link TokenReplacer#withListener(ReplacerListener)}. without a listener
+ * nothing is measured at all.
+ * 
+ * <p>
+ * the methods are called synchronously while substituting, so they should
+ * return quickly. implementations must be thread safe if the replacer is used
+ * by several threads, e.g. after {@link TokenReplacer#freeze()} or for
+ * parallel substitutions. see {@link JmxReplacerListener} for an
+ * implementation that exposes the counters through JMX.
+ * </p>
+ * 
+ * @author msauer
+ */
+public interface ReplacerListener {
+
+	/**
+	 * called after a String or {@link CharSequence} was substituted
+	 * successfully (substitute, substituteTo, substituteParallel,
+	 * {@link CompiledTemplate#render()} and {@link Substitutor}). streams,
+	 * files and bytes only report their tokens, generators and failures.
+	 * 
+	 * @param inputLength
+	 *            the number of chars of the template
+	 * @param outputLength
+	 *            the number of chars of the result
+	 * @param durationNanos
+	 *            the time needed for parsing and replacing the tokens
+	 */
+	void onSubstitution(long inputLength, long outputLength, long durationNanos);
+
+	/**
+	 * called for every token that was found
+	 * 
+	 * @param tokenName
+	 *            the name of the token, e.g. 'amount'
+	 * @param resolved
+	 *            false if no value or generator was registered and missing
+	 *            values are ignored
+	 */
+	void onToken(String tokenName, boolean resolved);
+
+	/**
+	 * called after a {@link Generator} or {@link StatelessGenerator} created a
+	 * value, not for static values and cached values
+	 * 
+	 * @param tokenName
+	 *            the name of the token, e.g. 'amount'
+	 * @param durationNanos
+	 *            the time the generator needed
+	 */
+	void onGenerator(String tokenName, long durationNanos);
+
+	/**
+	 * called right before a {@link ParseException} or a
+	 * {@link NoValueOrGeneratorFoundException} is thrown
+	 */
+	void onFailure(RuntimeException exception);
+
+}
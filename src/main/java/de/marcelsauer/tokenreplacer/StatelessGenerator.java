@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * a {@link Generator} that gets the arguments passed directly instead of
+ * having them injected before the call to {@link Generator#generate()}. as no
+ * state needs to be kept between the calls a single instance can be used by
+ * several threads at the same time (e.g. with a replacer created via
+ * {@link TokenReplacer#freeze()}) as long as the implementation itself does not
+ * keep any mutable state.
+ * 
+ * <pre>
+ * toky.register(&quot;sum&quot;, new StatelessGenerator() {
+ * 
+ * 	&#064;Override
+ * 	public String generate(String[] args) {
+ * 		return String.valueOf(Integer.parseInt(args[0]) + Integer.parseInt(args[1]));
+ * 	}
+ * });
+ * toky.substitute(&quot;{sum(1,2)}&quot;); // will produce &quot;3&quot;
+ * </pre>
+ * 
+ * @author msauer
+ * @see Toky
+ */
+public interface StatelessGenerator {
+
+	/**
+	 * @param args
+	 *            the arguments of the token, e.g. {sum(1,2)} -> ["1", "2"].
+	 *            will never be null but can be of size 0!
+	 * @return the generated String that will be used to replace a
+	 *         {@link Token}
+	 */
+	String generate(String[] args);
+
+}
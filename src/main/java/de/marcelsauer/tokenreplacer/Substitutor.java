@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.nio.CharBuffer;
+
+/**
+ * substitutes one string after the other reusing its internal buffers, created
+ * via {@link TokenReplacer#newSubstitutor()}. use it when substituting many
+ * (short) strings in a loop, e.g. to map a stream of strings. apart from the
+ * values created by generators no memory is allocated once the buffers have
+ * grown to the size of the largest result, if the result is written to a
+ * caller supplied array or {@link CharBuffer}. a
+ * {@link Substitutor} <b>IS NOT THREAD SAFE</b>, use one per thread.
+ * 
+ * <pre>
+ * Substitutor substitutor = toky.newSubstitutor();
+ * for (String message : messages) {
+ * 	send(substitutor.substitute(message));
+ * }
+ * </pre>
+ * 
+ * @author msauer
+ * @see TokenReplacer#substitute(String)
+ */
+public interface Substitutor {
+
+	/**
+	 * same as {@link TokenReplacer#substitute(String)}
+	 */
+	String substitute(String toSubstitute);
+
+	/**
+	 * substitutes into the given array, e.g. a buffer that is reused for
+	 * every call. the result is only written if it fits completely, otherwise
+	 * the array is not changed and the return value tells how much space is
+	 * needed.
+	 * 
+	 * <pre>
+	 * int length = substitutor.substituteTo(template, buffer, 0);
+	 * if (length &gt; buffer.length) {
+	 * 	buffer = new char[length];
+	 * 	substitutor.substituteTo(template, buffer, 0);
+	 * }
+	 * </pre>
+	 * 
+	 * @param in
+	 *            the text that contains the tokens, must not be null
+	 * @param out
+	 *            the array to write the result to, must not be null
+	 * @param offset
+	 *            the position of the first char of the result in the array
+	 * @return the length of the result, the result was written if it is not
+	 *         greater than out.length - offset
+	 */
+	int substituteTo(CharSequence in, char[] out, int offset);
+
+	/**
+	 * substitutes into the remaining space of the given buffer and advances
+	 * its position. the result is only written if it fits completely.
+	 * 
+	 * @param in
+	 *            the text that contains the tokens, must not be null
+	 * @param out
+	 *            the buffer to write the result to, must not be null
+	 * @return true if the result was written, false if it did not fit into
+	 *         the remaining space
+	 */
+	boolean substituteTo(CharSequence in, CharBuffer out);
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * the {@link CompiledTemplate}s of one {@link FiniteStateMachineTokenReplacer}
+ * keyed by the template, see {@link TokenReplacer#withTemplateCache(int, long)}.
+ * holds at most a given number of templates and chars, when it is full the
+ * least recently used templates are evicted. it must be invalidated whenever
+ * the delimiters change, as they decide how a template is parsed.
+ * 
+ * all methods are synchronized, so the cache can be used by a frozen replacer
+ * shared between threads. concurrent misses for the same template may compile
+ * it more than once.
+ * 
+ * @author msauer
+ */
+final class TemplateCache {
+
+	private final int maximumSize;
+	private final long maximumChars;
+	private final Map<String, CompiledTemplate> entries = new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true);
+	// the length of all cached templates
+	private long chars;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long invalidationCount;
+
+	TemplateCache(int maximumSize, long maximumChars) {
+		Validate.isTrue(maximumSize > 0, "the maximum size must be greater than 0!");
+		Validate.isTrue(maximumChars > 0, "the maximum number of chars must be greater than 0!");
+		this.maximumSize = maximumSize;
+		this.maximumChars = maximumChars;
+	}
+
+	/**
+	 * @return an empty cache with the same limits
+	 */
+	TemplateCache copy() {
+		return new TemplateCache(this.maximumSize, this.maximumChars);
+	}
+
+	/**
+	 * @return the cached template or null
+	 */
+	synchronized CompiledTemplate get(String template) {
+		final CompiledTemplate compiled = this.entries.get(template);
+		if (compiled == null) {
+			this.missCount++;
+		} else {
+			this.hitCount++;
+		}
+		return compiled;
+	}
+
+	/**
+	 * caches the template unless it is longer than all templates together may
+	 * be, evicts the least recently used templates if the cache is full
+	 */
+	synchronized void put(String template, CompiledTemplate compiled) {
+		if (template.length() > this.maximumChars) {
+			return;
+		}
+		final CompiledTemplate previous = this.entries.put(template, compiled);
+		if (previous == null) {
+			this.chars += template.length();
+		}
+		final Iterator<String> eldest = this.entries.keySet().iterator();
+		while (this.entries.size() > this.maximumSize || this.chars > this.maximumChars) {
+			this.chars -= eldest.next().length();
+			eldest.remove();
+			this.evictionCount++;
+		}
+	}
+
+	/**
+	 * removes all templates, e.g. because they were parsed with other
+	 * delimiters
+	 */
+	synchronized void invalidate() {
+		if (!this.entries.isEmpty()) {
+			this.entries.clear();
+			this.chars = 0;
+			this.invalidationCount++;
+		}
+	}
+
+	synchronized TemplateCacheStats getStats() {
+		return new TemplateCacheStats(this.hitCount, this.missCount, this.evictionCount, this.invalidationCount,
+				this.entries.size(), this.chars);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TemplateCache [maximumSize=" + this.maximumSize + ", maximumChars=" + this.maximumChars + ", stats="
+				+ getStats() + "]";
+	}
+}
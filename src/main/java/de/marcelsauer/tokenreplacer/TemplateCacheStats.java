@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * an immutable snapshot of the statistics of the template cache, see
+ * {@link TokenReplacer#withTemplateCache(int, long)}
+ * 
+ * @author msauer
+ */
+public final class TemplateCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long invalidationCount;
+	private final int size;
+	private final long chars;
+
+	public TemplateCacheStats(long hitCount, long missCount, long evictionCount, long invalidationCount, int size,
+			long chars) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.invalidationCount = invalidationCount;
+		this.size = size;
+		this.chars = chars;
+	}
+
+	/**
+	 * @return the number of templates that were found already compiled
+	 */
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the number of templates that had to be compiled
+	 */
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * @return the number of templates removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * @return how often all templates were removed because the delimiters
+	 *         changed
+	 */
+	public long getInvalidationCount() {
+		return this.invalidationCount;
+	}
+
+	/**
+	 * @return the number of templates currently cached
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the length of all templates currently cached
+	 */
+	public long getChars() {
+		return this.chars;
+	}
+
+	/**
+	 * @return hits / (hits + misses) or 1.0 if there was no lookup yet
+	 */
+	public double getHitRate() {
+		final long lookups = this.hitCount + this.missCount;
+		return lookups == 0 ? 1.0 : (double) this.hitCount / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateCacheStats [hitCount=" + this.hitCount + ", missCount=" + this.missCount + ", evictionCount="
+				+ this.evictionCount + ", invalidationCount=" + this.invalidationCount + ", size=" + this.size
+				+ ", chars=" + this.chars + "]";
+	}
+}
@@ -16,6 +16,10 @@
 
 package de.marcelsauer.tokenreplacer;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
 /**
  * a typical token
  * 
@@ -26,7 +30,13 @@ public class Token {
 
 	private final String token;
 	private Generator generator;
+	private StatelessGenerator statelessGenerator;
+	private String value;
+	private volatile EncodedValue encodedValue;
 	private String fullToken;
+	// 0 if the generator may take as long as it takes
+	private long timeoutNanos;
+	private String fallback;
 
 	/**
 	 * @param token
@@ -59,9 +69,63 @@ public class Token {
 				// no need here as we have a static value
 			}
 		};
+		this.statelessGenerator = new StatelessGenerator() {
+
+			@Override
+			public String generate(String[] args) {
+				return value;
+			}
+		};
+		this.value = value;
+		this.encodedValue = null;
+		return this;
+	}
+
+	/**
+	 * limits how long the generator may take when the token is substituted
+	 * asynchronously (see
+	 * {@link TokenReplacer#substituteAsync(String, java.util.concurrent.ExecutorService)}
+	 * ). if it takes longer it is cancelled and the fallback is used, without a
+	 * fallback the substitution fails with a {@link GeneratorTimeoutException}.
+	 * 
+	 * @param timeout
+	 *            must be greater than 0
+	 * @return the {@link #Token} to allow method chaining
+	 */
+	public Token withTimeout(long timeout, TimeUnit unit) {
+		Validate.isTrue(timeout > 0, "the timeout must be greater than 0!");
+		Validate.notNull(unit);
+		this.timeoutNanos = unit.toNanos(timeout);
 		return this;
 	}
 
+	/**
+	 * @param fallback
+	 *            the value used when the generator fails or takes longer than
+	 *            the timeout while the token is substituted asynchronously,
+	 *            must not be null
+	 * @return the {@link #Token} to allow method chaining
+	 */
+	public Token withFallback(String fallback) {
+		Validate.notNull(fallback);
+		this.fallback = fallback;
+		return this;
+	}
+
+	/**
+	 * @return the timeout in nanoseconds or 0 if there is none
+	 */
+	long getTimeoutNanos() {
+		return this.timeoutNanos;
+	}
+
+	/**
+	 * @return the fallback value or null if there is none
+	 */
+	String getFallback() {
+		return this.fallback;
+	}
+
 	/**
 	 * @return the {@link #Token}
 	 */
@@ -78,19 +142,90 @@ public class Token {
 	 */
 	public Token replacedBy(Generator generator) {
 		this.generator = generator;
+		this.statelessGenerator = generator == null ? null : new GeneratorAdapter(generator);
+		this.value = null;
+		this.encodedValue = null;
+		return this;
+	}
+
+	/**
+	 * @param generator
+	 *            the {@link StatelessGenerator} to use when replacing the
+	 *            value, the arguments are passed directly so the generator can
+	 *            be called by several threads at the same time. must not be
+	 *            null
+	 * @return the {@link #Token} to allow method chaining
+	 */
+	public Token replacedBy(StatelessGenerator generator) {
+		Validate.notNull(generator);
+		this.generator = null;
+		this.statelessGenerator = generator;
+		this.value = null;
+		this.encodedValue = null;
 		return this;
 	}
 
 	/**
-	 * @return the {@link #Generator} associated with the {@link #Token}. can be null
+	 * @return the {@link #Generator} associated with the {@link #Token}. can be
+	 *         null, e.g. if the token is replaced by a
+	 *         {@link StatelessGenerator}
 	 */
 	public Generator getGenerator() {
 		return this.generator;
 	}
 
+	/**
+	 * @return the {@link StatelessGenerator} used to create the value. for
+	 *         static values and {@link Generator}s this is an adapter. can be
+	 *         null if neither a value nor a generator was set
+	 */
+	public StatelessGenerator getStatelessGenerator() {
+		return this.statelessGenerator;
+	}
+
+	/**
+	 * @return true if the token is replaced by a static value
+	 */
+	boolean hasStaticValue() {
+		return this.value != null;
+	}
+
+	/**
+	 * @return a new {@link Token} with the same name and generator
+	 */
+	Token copy() {
+		Token copy = new Token(this.token);
+		copy.generator = this.generator;
+		copy.statelessGenerator = this.statelessGenerator;
+		copy.value = this.value;
+		copy.encodedValue = this.encodedValue;
+		copy.timeoutNanos = this.timeoutNanos;
+		copy.fallback = this.fallback;
+		return copy;
+	}
+
+	/**
+	 * @return the static value encoded with the given {@link Charset} or null
+	 *         if the token is replaced by a generator. the bytes are encoded
+	 *         once and kept for the last {@link Charset} used, they must not
+	 *         be modified.
+	 */
+	byte[] getEncodedValue(Charset charset) {
+		if (this.value == null) {
+			return null;
+		}
+		EncodedValue encoded = this.encodedValue;
+		if (encoded == null || !encoded.charset.equals(charset)) {
+			encoded = new EncodedValue(charset, this.value);
+			this.encodedValue = encoded;
+		}
+		return encoded.bytes;
+	}
+
 	@Override
 	public String toString() {
-		return "Token [fullToken=" + this.fullToken + ", generator=" + this.generator + ", token=" + this.token + "]";
+		return "Token [fullToken=" + this.fullToken + ", generator="
+				+ (this.generator != null ? this.generator : this.statelessGenerator) + ", token=" + this.token + "]";
 	}
 
 	@Override
@@ -117,4 +252,45 @@ public class Token {
 			return false;
 		return true;
 	}
+
+	private static final class EncodedValue {
+
+		private final Charset charset;
+		private final byte[] bytes;
+
+		EncodedValue(Charset charset, String value) {
+			final ByteBuffer encoded = charset.encode(value);
+			this.charset = charset;
+			this.bytes = new byte[encoded.remaining()];
+			encoded.get(this.bytes);
+		}
+	}
+
+	/**
+	 * calls a {@link Generator} the legacy way, first injecting the arguments
+	 * and then generating the value. as the arguments are stored in the
+	 * generator between the two calls the generator is locked so that
+	 * concurrent substitutions can not mix up their arguments.
+	 */
+	private static final class GeneratorAdapter implements StatelessGenerator {
+
+		private final Generator generator;
+
+		GeneratorAdapter(Generator generator) {
+			this.generator = generator;
+		}
+
+		@Override
+		public String generate(String[] args) {
+			synchronized (this.generator) {
+				this.generator.inject(args);
+				return this.generator.generate();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return this.generator.toString();
+		}
+	}
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * the token start and end sequences of all dialects a replacer recognizes,
+ * e.g. {name}, ${name} and %name%. the first dialect is the one set via
+ * {@link TokenReplacer#withTokenStart(String)} and
+ * {@link TokenReplacer#withTokenEnd(String)}. instances are immutable, every
+ * change creates a new instance.
+ *
+ * @author msauer
+ */
+final class TokenDelimiters {
+
+	private final String[] starts;
+	private final String[] ends;
+	// dialects ordered by the length of their start, longest first
+	private final int[] byStartLength;
+	// first chars of all starts and ends, END_OF_STRING included
+	private final boolean[] asciiDelimiters = new boolean[128];
+	private final String otherDelimiters;
+	private final boolean[] asciiStarts = new boolean[128];
+	private final String otherStarts;
+	private final int maxLength;
+
+	TokenDelimiters(String start, String end) {
+		this(new String[] { start }, new String[] { end });
+	}
+
+	private TokenDelimiters(String[] starts, String[] ends) {
+		this.starts = starts;
+		this.ends = ends;
+		final Integer[] order = new Integer[starts.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return TokenDelimiters.this.starts[b].length() - TokenDelimiters.this.starts[a].length();
+			}
+		});
+		this.byStartLength = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			this.byStartLength[i] = order[i];
+		}
+
+		final StringBuilder otherStarts = new StringBuilder();
+		final StringBuilder otherDelimiters = new StringBuilder();
+		int maxLength = 1;
+		this.asciiStarts[Constants.DEFAULT_END_OF_STRING] = true;
+		this.asciiDelimiters[Constants.DEFAULT_END_OF_STRING] = true;
+		for (int i = 0; i < starts.length; i++) {
+			mark(starts[i].charAt(0), this.asciiStarts, otherStarts);
+			mark(starts[i].charAt(0), this.asciiDelimiters, otherDelimiters);
+			mark(ends[i].charAt(0), this.asciiDelimiters, otherDelimiters);
+			maxLength = Math.max(maxLength, Math.max(starts[i].length(), ends[i].length()));
+		}
+		this.otherStarts = otherStarts.toString();
+		this.otherDelimiters = otherDelimiters.toString();
+		this.maxLength = maxLength;
+	}
+
+	private static void mark(char c, boolean[] ascii, StringBuilder other) {
+		if (c < ascii.length) {
+			ascii[c] = true;
+		} else if (other.indexOf(String.valueOf(c)) < 0) {
+			other.append(c);
+		}
+	}
+
+	/**
+	 * @return a copy with the given start (or end if start is null) of the
+	 *         first dialect
+	 * @throws IllegalArgumentException
+	 *             if the start is the one of an additional dialect
+	 */
+	TokenDelimiters withFirst(String start, String end) {
+		final String[] starts = this.starts.clone();
+		final String[] ends = this.ends.clone();
+		if (start != null) {
+			Validate.isTrue(Arrays.asList(starts).lastIndexOf(start) <= 0, String.format(
+					"'%s' is the start of an additional dialect", start));
+			starts[0] = start;
+		}
+		if (end != null) {
+			ends[0] = end;
+		}
+		return new TokenDelimiters(starts, ends);
+	}
+
+	/**
+	 * @return a copy that also recognizes the given dialect, an additional
+	 *         dialect with the same start is replaced
+	 * @throws IllegalArgumentException
+	 *             if the start is the one of the first dialect
+	 */
+	TokenDelimiters withAdditional(String start, String end) {
+		final List<String> starts = new ArrayList<String>(Arrays.asList(this.starts));
+		final List<String> ends = new ArrayList<String>(Arrays.asList(this.ends));
+		final int existing = starts.indexOf(start);
+		Validate.isTrue(existing != 0, String.format(
+				"'%s' is the start of the first dialect, use withTokenStart and withTokenEnd to change it", start));
+		if (existing > 0) {
+			ends.set(existing, end);
+		} else if (existing < 0) {
+			starts.add(start);
+			ends.add(end);
+		}
+		return new TokenDelimiters(starts.toArray(new String[starts.size()]), ends.toArray(new String[ends.size()]));
+	}
+
+	/**
+	 * @return true if there is only one dialect with single char delimiters,
+	 *         which is handled by the faster single char state machine
+	 */
+	boolean isSingleChar() {
+		return this.starts.length == 1 && this.starts[0].length() == 1 && this.ends[0].length() == 1;
+	}
+
+	String getStart(int dialect) {
+		return this.starts[dialect];
+	}
+
+	String getEnd(int dialect) {
+		return this.ends[dialect];
+	}
+
+	int getDialectCount() {
+		return this.starts.length;
+	}
+
+	/**
+	 * @return true if the start or end of any dialect contains the given char
+	 */
+	boolean contains(char c) {
+		for (int i = 0; i < this.starts.length; i++) {
+			if (this.starts[i].indexOf(c) >= 0 || this.ends[i].indexOf(c) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the dialect with the n-th longest start
+	 */
+	int byStartLength(int n) {
+		return this.byStartLength[n];
+	}
+
+	/**
+	 * @return the length of the longest start or end
+	 */
+	int getMaxLength() {
+		return this.maxLength;
+	}
+
+	/**
+	 * @return true if the char might begin a token start (or is
+	 *         {@link Constants#DEFAULT_END_OF_STRING})
+	 */
+	boolean isStartCandidate(char c) {
+		return c < this.asciiStarts.length ? this.asciiStarts[c] : this.otherStarts.indexOf(c) >= 0;
+	}
+
+	/**
+	 * @return true if the char begins any start or end and thus can not be
+	 *         part of a token name or an argument
+	 */
+	boolean isDelimiter(char c) {
+		return c < this.asciiDelimiters.length ? this.asciiDelimiters[c] : this.otherDelimiters.indexOf(c) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder dialects = new StringBuilder();
+		for (int i = 0; i < this.starts.length; i++) {
+			dialects.append(i == 0 ? "" : ", ").append(this.starts[i]).append("name").append(this.ends[i]);
+		}
+		return "TokenDelimiters [" + dialects + "]";
+	}
+}
@@ -16,6 +16,17 @@
 
 package de.marcelsauer.tokenreplacer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author msauer
@@ -45,6 +56,330 @@ public interface TokenReplacer {
 	 */
 	String substitute(final String toSubstitute);
 
+	/**
+	 * replaces the tokens like {@link java.text.MessageFormat} does. a token
+	 * without arguments whose name is a number, e.g. <code>{0}</code>, is
+	 * replaced by the value at that index. the values are not registered and
+	 * no token is looked up for them, so one (frozen) replacer can be shared
+	 * by all callers. all other tokens and numbers beyond the given values are
+	 * replaced as in {@link #substitute(String)}. the template is compiled via
+	 * {@link #compile(String)}.
+	 * 
+	 * @param template
+	 *            the string that contains the tokens, null is returned as-is
+	 * @param values
+	 *            the values by index, <code>null</code> values are replaced
+	 *            by &quot;null&quot;
+	 * @return the result after replacing all tokens
+	 * @throws ParseException
+	 *             when the template could not be parsed
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and missing values are not ignored
+	 * @see CompiledTemplate#render(Object...)
+	 */
+	String substitute(String template, Object... values);
+
+	/**
+	 * same as {@link #substitute(String)} but reads directly from the given
+	 * {@link CharSequence} (e.g. a {@link StringBuilder} or
+	 * {@link java.nio.CharBuffer}) and appends the result to the given
+	 * {@link Appendable} (e.g. a {@link StringBuilder} or a {@link Writer})
+	 * without creating intermediate copies. literal text is appended in runs,
+	 * not char by char.
+	 * 
+	 * @param in
+	 *            the text that contains the tokens, must not be null
+	 * @param out
+	 *            the result after replacing all tokens with the proper values
+	 *            will be appended here, must not be null
+	 * @throws IOException
+	 *             when appending to the output fails
+	 * @throws ParseException
+	 *             when the input could not be parsed. everything before the
+	 *             invalid token has already been appended to the output
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for the
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	void substituteTo(CharSequence in, Appendable out) throws IOException;
+
+	/**
+	 * replaces the names of all registered tokens wherever they appear as plain
+	 * text, without any token delimiters, e.g. with the token "ACME-1" the
+	 * text "order ACME-1 now" becomes "order <value> now". all names are
+	 * searched in one pass (Aho-Corasick), the cost does not grow with the
+	 * number of registered tokens. where names overlap the leftmost match wins
+	 * and of those the longest. generators are called without arguments,
+	 * generator caching applies as for {@link #substitute(String)}.
+	 * 
+	 * @param toSubstitute
+	 *            the text that contains the token names
+	 * @return the result after replacing all token names with the proper
+	 *         values, null if the given text was null
+	 */
+	String substituteLiterals(String toSubstitute);
+
+	/**
+	 * same as {@link #substituteLiterals(String)} but reads directly from the
+	 * given {@link CharSequence} and appends the result to the given
+	 * {@link Appendable}
+	 * 
+	 * @param in
+	 *            the text that contains the token names, must not be null
+	 * @param out
+	 *            the result will be appended here, must not be null
+	 * @throws IOException
+	 *             when appending to the output fails
+	 */
+	void substituteLiteralsTo(CharSequence in, Appendable out) throws IOException;
+
+	/**
+	 * @return a {@link Substitutor} that reuses its internal buffers between
+	 *         the calls, use it when substituting many strings in a loop or
+	 *         when mapping a stream of strings. it is not thread safe, use one
+	 *         per thread.
+	 */
+	Substitutor newSubstitutor();
+
+	/**
+	 * @return a {@link ChunkSubstitutor} for input that arrives in chunks,
+	 *         e.g. in a non-blocking server. the output is returned chunk by
+	 *         chunk as soon as it is known, the input is never buffered as a
+	 *         whole. it is not thread safe, use one per stream.
+	 */
+	ChunkSubstitutor newChunkSubstitutor();
+
+	/**
+	 * substitutes all given strings like {@link #substitute(String)} but
+	 * reuses the internal buffers. a string that can not be substituted does
+	 * not abort the batch, its exception is collected in the
+	 * {@link BatchResult} instead.
+	 * 
+	 * @param toSubstitute
+	 *            the strings that contain the tokens, must not be null but may
+	 *            contain null
+	 * @return the results in the same order as the input
+	 */
+	BatchResult substituteAll(List<String> toSubstitute);
+
+	/**
+	 * same as {@link #substituteAll(List)} but the strings are substituted in
+	 * slices by the given {@link ExecutorService}, the order of the results is
+	 * the same as the input. the {@link Generator}s are called concurrently,
+	 * see {@link #freeze()}.
+	 * 
+	 * @param toSubstitute
+	 *            the strings that contain the tokens, must not be null but may
+	 *            contain null
+	 * @param executor
+	 *            runs the substitution of the slices, must not be null
+	 * @return the results in the same order as the input
+	 */
+	BatchResult substituteAll(List<String> toSubstitute, ExecutorService executor);
+
+	/**
+	 * same as {@link #substitute(String)} but splits large inputs into chunks
+	 * that are substituted in parallel by the given {@link ExecutorService}
+	 * (e.g. a ForkJoinPool on java 7+). the chunks are split right before a
+	 * token start so no chunk starts or ends within a token, smaller inputs
+	 * are substituted by the calling thread.
+	 * 
+	 * <p>
+	 * the {@link Generator}s are called concurrently, see {@link #freeze()}.
+	 * with generator caching turned on all chunks share one cache per call, the
+	 * first value generated for a token is used for all occurrences of it. in
+	 * case of errors the exception of the first failing chunk is thrown, the
+	 * {@link ParseException#getPosition()} is the position within the whole
+	 * input. chunks after the failing one may have called their generators
+	 * already.
+	 * </p>
+	 * 
+	 * @param toSubstitute
+	 *            the string that contains the tokens, will be returned as-is in
+	 *            case of null
+	 * @param executor
+	 *            runs the substitution of the chunks, must not be null
+	 * @return the result after replacing all tokens with the proper values
+	 * @throws ParseException
+	 *             when the input could not be parsed
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for the
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	String substituteParallel(final String toSubstitute, ExecutorService executor);
+
+	/**
+	 * same as {@link #substitute(String)} but the generators of all tokens run
+	 * at the same time on the given executor, so a template with many slow
+	 * generators (e.g. waiting for I/O) takes about as long as the slowest
+	 * one. see {@link CompiledTemplate#renderAsync(ExecutorService)} for the
+	 * details, timeouts and fallbacks are set per token via
+	 * {@link Token#withTimeout(long, java.util.concurrent.TimeUnit)} and
+	 * {@link Token#withFallback(String)}.
+	 * 
+	 * @param toSubstitute
+	 *            the string that contains the tokens, must not be null
+	 * @param executor
+	 *            runs the generators, must not be null
+	 * @return the result after replacing all tokens with the proper values
+	 * @throws ParseException
+	 *             when the input could not be parsed
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for a
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	Future<String> substituteAsync(String toSubstitute, ExecutorService executor);
+
+	/**
+	 * same as {@link #substitute(String)} but reads the tokens from the given
+	 * {@link Reader} and writes the result to the given {@link Writer}. the
+	 * input is read in chunks of a fixed size, so the memory used does not
+	 * depend on the size of the input. tokens may span the chunk boundaries.
+	 * the streams are flushed but not closed.
+	 * 
+	 * @param in
+	 *            the input that contains the tokens, must not be null
+	 * @param out
+	 *            the result after replacing all tokens with the proper values,
+	 *            must not be null
+	 * @throws IOException
+	 *             when reading or writing fails
+	 * @throws ParseException
+	 *             when the input could not be parsed. everything before the
+	 *             invalid token has already been written to the output
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for the
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	void substitute(Reader in, Writer out) throws IOException;
+
+	/**
+	 * same as {@link #substitute(Reader, Writer)} for byte streams
+	 * 
+	 * @param in
+	 *            the input that contains the tokens, must not be null
+	 * @param out
+	 *            the result after replacing all tokens with the proper values,
+	 *            must not be null
+	 * @param charset
+	 *            the {@link Charset} used for decoding the input and encoding
+	 *            the output, must not be null
+	 * @throws IOException
+	 *             when reading or writing fails
+	 */
+	void substitute(InputStream in, OutputStream out, Charset charset) throws IOException;
+
+	/**
+	 * substitutes the content of the input file and writes the result to the
+	 * output file. for UTF-8 and single byte charsets (with the default or
+	 * other ASCII delimiters) the input file is memory mapped and only the
+	 * tokens are decoded, all other text is copied to the output as-is
+	 * without decoding or encoding it. for other charsets the files are
+	 * streamed like in {@link #substitute(InputStream, OutputStream, Charset)}.
+	 * 
+	 * @param in
+	 *            the file that contains the tokens, must not be null
+	 * @param out
+	 *            the file the result is written to, will be overwritten if it
+	 *            exists, must not be null and must not be the input file
+	 * @param charset
+	 *            the {@link Charset} of the input and the output, must not be
+	 *            null
+	 * @throws IOException
+	 *             when reading or writing fails
+	 * @throws ParseException
+	 *             when the input could not be parsed
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for the
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	void substitute(File in, File out, Charset charset) throws IOException;
+
+	/**
+	 * substitutes encoded text without decoding it as a whole. for UTF-8 and
+	 * single byte charsets (with the default or other ASCII delimiters) only
+	 * the token names and arguments are decoded, all other bytes are copied
+	 * as-is. static values are encoded once and reused. for other charsets the
+	 * input is decoded, substituted and encoded again.
+	 * 
+	 * @param in
+	 *            the encoded text that contains the tokens, must not be null
+	 * @param charset
+	 *            the {@link Charset} of the input and the result, must not be
+	 *            null
+	 * @return the encoded result after replacing all tokens with the proper
+	 *         values
+	 * @throws ParseException
+	 *             when the input could not be parsed
+	 * @throws NoValueOrGeneratorFoundException
+	 *             when no explicit value or {@link Generator} was found for the
+	 *             token and we don't ignore errors via
+	 *             {@link #doNotIgnoreMissingValues()}
+	 */
+	byte[] substitute(byte[] in, Charset charset);
+
+	/**
+	 * same as {@link #substitute(byte[], Charset)} but reads the remaining
+	 * bytes of the given {@link ByteBuffer} (its position is not changed) and
+	 * writes the result to the given {@link OutputStream}, which is not
+	 * flushed or closed.
+	 * 
+	 * @throws IOException
+	 *             when writing fails
+	 */
+	void substitute(ByteBuffer in, OutputStream out, Charset charset) throws IOException;
+
+	/**
+	 * parses the given template once so it can be rendered many times via
+	 * {@link CompiledTemplate#render()} without parsing it again. the values
+	 * and generators are looked up during rendering, so tokens can be
+	 * registered before or after compiling the template.
+	 * 
+	 * <pre>
+	 * CompiledTemplate template = toky.compile(&quot;i can count to {number}&quot;);
+	 * template.render();
+	 * </pre>
+	 * 
+	 * @param template
+	 *            the string that contains the tokens, must not be null
+	 * @return the parsed template
+	 * @throws ParseException
+	 *             when the template could not be parsed
+	 */
+	CompiledTemplate compile(final String template);
+
+	/**
+	 * creates an immutable copy of this {@link TokenReplacer} with all tokens
+	 * and settings registered so far. changes made to this instance (or to
+	 * the registered {@link Token}s) afterwards do not affect the copy and
+	 * all methods of the copy that would change it throw an
+	 * {@link UnsupportedOperationException}.
+	 * 
+	 * <p>
+	 * the copy is <b>thread safe</b> and can be shared between threads
+	 * without locking: everything done to this instance before calling
+	 * {@link #freeze()} happens-before every substitution done with the copy
+	 * in any thread, even if the copy is handed to other threads without
+	 * synchronization. {@link StatelessGenerator}s are called concurrently,
+	 * so they must not keep mutable state. {@link Generator}s are locked
+	 * while the arguments are injected and the value is generated (static
+	 * values are not locked at all).
+	 * </p>
+	 * 
+	 * <pre>
+	 * TokenReplacer shared = new Toky().register(&quot;number&quot;, &quot;123&quot;).freeze();
+	 * </pre>
+	 * 
+	 * @return the immutable copy
+	 */
+	TokenReplacer freeze();
+
 	/**
 	 * registers a static value for a given token. if you need dynamic behaviour
 	 * then use {@link #register(Generator)}. same as registering a token via
@@ -89,6 +424,22 @@ public interface TokenReplacer {
 	 */
 	TokenReplacer register(String token, Generator Generator);
 
+	/**
+	 * registers a {@link Token} that will be replaced by the given
+	 * {@link StatelessGenerator}. same as registering a token via
+	 * {@link #register(Token)} and supplying a generator via
+	 * {@link Token#replacedBy(StatelessGenerator)}
+	 * 
+	 * @param token
+	 *            the name of the token to be replaced e.g. for ${date} ->
+	 *            "date" would be the token, must not be null or empty
+	 * @param generator
+	 *            the {@link StatelessGenerator} to use when replacing the
+	 *            value, must not be null
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer register(String token, StatelessGenerator generator);
+
 	/**
 	 * registers an array of replacements for a string based in indexed tokens.
 	 * the tokens will be replaced in the order they were added to the array.
@@ -111,7 +462,9 @@ public interface TokenReplacer {
 	 * @param tokenStart
 	 *            sets the token start identifier to the given value e.g.
 	 *            [dynamic] -> '[' would be the start identifier, e.g. '[', must
-	 *            not be null or empty
+	 *            not be null or empty. it may be longer than one char, e.g.
+	 *            '${', must not be the start of an additional dialect and
+	 *            must not contain an argument delimiter
 	 * @return the {@link #TokenReplacer} to allow method chaining
 	 */
 	TokenReplacer withTokenStart(String tokenStart);
@@ -120,11 +473,32 @@ public interface TokenReplacer {
 	 * @param tokenEnd
 	 *            sets the token end identifier to the given value e.g.
 	 *            [dynamic] -> ']' would be the end identifier, e.g. '[', must
-	 *            not be null or empty
+	 *            not be null or empty. it may be longer than one char, e.g.
+	 *            '}}', must not contain an argument delimiter
 	 * @return the {@link #TokenReplacer} to allow method chaining
 	 */
 	TokenReplacer withTokenEnd(String tokenEnd);
 
+	/**
+	 * recognizes tokens written with the given start and end in addition to
+	 * the ones already known, e.g. ${name}, {{name}} and %name% in the same
+	 * template. all dialects are found in a single pass over the input, where
+	 * starts overlap the longest one wins. a missing value that is ignored is
+	 * kept in the dialect it was written in. the arguments use the same
+	 * delimiters in all dialects. adding a dialect with the start of an
+	 * additional one replaces its end.
+	 *
+	 * @param tokenStart
+	 *            the start of the additional dialect, must not be null or
+	 *            empty, must not be the start of the first dialect and must
+	 *            not contain an argument delimiter
+	 * @param tokenEnd
+	 *            the end of the additional dialect, must not be null or
+	 *            empty and must not contain an argument delimiter
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withAdditionalTokenDelimiters(String tokenStart, String tokenEnd);
+
 	/**
 	 * @param argsSep
 	 *            changes the delimiter of the arguments to the given value e.g.
@@ -172,9 +546,9 @@ public interface TokenReplacer {
 
 	/**
 	 * turns generator caching ON. once a value is determined through a
-	 * {@link Generator} all remaining values with the same token name will be
-	 * replaced by the cached version. use {@link #disableGeneratorCaching()} to
-	 * turn caching off.
+	 * {@link Generator} all remaining values with the same token name and
+	 * arguments will be replaced by the cached version within the same call.
+	 * use {@link #disableGeneratorCaching()} to turn caching off.
 	 * 
 	 * @return the {@link #TokenReplacer} to allow method chaining
 	 */
@@ -188,4 +562,146 @@ public interface TokenReplacer {
 	 */
 	TokenReplacer disableGeneratorCaching();
 
+	/**
+	 * turns nested expansion ON. values that contain tokens themselves, e.g.
+	 * {greeting} -> "Hello {name}", are expanded recursively while the input
+	 * is substituted, so the input is still read only once. the expanded value
+	 * of a token is remembered within the same call, values of generators
+	 * only if generator caching is enabled. use
+	 * {@link #disableNestedExpansion()} to turn it off.
+	 * 
+	 * @param maxDepth
+	 *            how deep values may be nested, e.g. 1 only expands the tokens
+	 *            within the values of the input's tokens. must be greater
+	 *            than 0
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 * @see CyclicTokenException
+	 * @see NestedExpansionException
+	 */
+	TokenReplacer enableNestedExpansion(int maxDepth);
+
+	/**
+	 * turns nested expansion OFF, which is the default. values are inserted
+	 * as they are.
+	 * 
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer disableNestedExpansion();
+
+	/**
+	 * keeps the values of the generators in the given {@link GeneratorCache}
+	 * across calls, e.g. expensive lookups that stay valid for some time.
+	 * values are cached per token name and arguments, static values are not
+	 * cached. this works independently of {@link #enableGeneratorCaching()}
+	 * which only caches within one call. a frozen copy (see
+	 * {@link #freeze()}) uses the same cache.
+	 * 
+	 * <pre>
+	 * toky.withGeneratorCache(new LruGeneratorCache(1000).withTimeToLive(5, TimeUnit.SECONDS));
+	 * </pre>
+	 * 
+	 * @param cache
+	 *            the cache to use, must not be null
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withGeneratorCache(GeneratorCache cache);
+
+	/**
+	 * stops using the {@link GeneratorCache} set via
+	 * {@link #withGeneratorCache(GeneratorCache)}
+	 * 
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withoutGeneratorCache();
+
+	/**
+	 * looks up tokens that are not registered in the given
+	 * {@link CompactDictionary}, e.g. millions of static values that would
+	 * take too much memory as {@link Token}s. registered tokens take
+	 * precedence, tokens with arguments are not looked up in the dictionary.
+	 * values from the dictionary are not expanded (see
+	 * {@link #enableNestedExpansion(int)}) or replaced as plain text (see
+	 * {@link #substituteLiterals(String)}). a frozen copy (see
+	 * {@link #freeze()}) uses a copy of the dictionary as it was when
+	 * freezing, later changes do not affect it.
+	 * 
+	 * @param dictionary
+	 *            the dictionary to use, must not be null
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withDictionary(CompactDictionary dictionary);
+
+	/**
+	 * stops using the {@link CompactDictionary} set via
+	 * {@link #withDictionary(CompactDictionary)}
+	 * 
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withoutDictionary();
+
+	/**
+	 * same as {@link #withTemplateCache(int, long)} without a limit for the
+	 * number of chars
+	 */
+	TokenReplacer withTemplateCache(int maximumSize);
+
+	/**
+	 * keeps the templates compiled by {@link #compile(String)} keyed by the
+	 * template, so {@link #substitute(String)},
+	 * {@link #substitute(String, Object...)} and {@link #compile(String)}
+	 * parse a template seen before only once. when the cache is full the least
+	 * recently used templates are evicted. all templates are removed when a
+	 * token or argument delimiter is changed. a frozen copy (see
+	 * {@link #freeze()}) starts with an empty cache of the same size, it may
+	 * be used by several threads at once.
+	 * 
+	 * <pre>
+	 * toky.withTemplateCache(1000, 10 * 1024 * 1024); // 1000 templates, 10M chars at most
+	 * </pre>
+	 * 
+	 * @param maximumSize
+	 *            the number of templates kept at most, must be greater than 0
+	 * @param maximumChars
+	 *            the length of all templates kept at most, longer templates
+	 *            are not cached. must be greater than 0
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 * @see #getTemplateCacheStats()
+	 */
+	TokenReplacer withTemplateCache(int maximumSize, long maximumChars);
+
+	/**
+	 * stops caching templates, which is the default
+	 * 
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withoutTemplateCache();
+
+	/**
+	 * @return hits, misses, evictions and invalidations of the template cache,
+	 *         null if templates are not cached
+	 * @see #withTemplateCache(int, long)
+	 */
+	TemplateCacheStats getTemplateCacheStats();
+
+	/**
+	 * reports parse and substitution timings, output sizes, the tokens found,
+	 * generator latencies and failures to the given {@link ReplacerListener},
+	 * e.g. a {@link JmxReplacerListener}. without a listener nothing is
+	 * measured. a frozen copy (see {@link #freeze()}) reports to the same
+	 * listener.
+	 * 
+	 * @param listener
+	 *            the listener to report to, must not be null
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withListener(ReplacerListener listener);
+
+	/**
+	 * stops reporting to the {@link ReplacerListener} set via
+	 * {@link #withListener(ReplacerListener)}
+	 * 
+	 * @return the {@link #TokenReplacer} to allow method chaining
+	 */
+	TokenReplacer withoutListener();
+
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+/**
+ * the registered {@link Token}s in an open addressed hash table that is
+ * looked up with the chars of the token name as they were read from the
+ * input, e.g. from the reused buffer of the state machine, so no String has to
+ * be created for the name. the hash is the one of {@link String#hashCode()},
+ * so the hash of a name that is already a String is not computed again.
+ * 
+ * <p>
+ * a small filter over the length and the first char of all names rejects
+ * most unknown tokens before the hash is computed.
+ * </p>
+ * 
+ * @author msauer
+ */
+final class TokenTable {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Token[] tokens = new Token[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int size;
+	// bit n is set if there is a name of length n, bit 63 for all longer ones
+	private long lengths;
+	// bit c is set if there is a name starting with the ascii char c
+	private long lowFirstChars;
+	private long highFirstChars;
+	private boolean otherFirstChars;
+
+	/**
+	 * adds the token or replaces the one with the same name
+	 */
+	void put(Token token) {
+		if (2 * (this.size + 1) > this.tokens.length) {
+			resize(this.tokens.length * 2);
+		}
+		if (insert(this.tokens, this.hashes, token)) {
+			this.size++;
+		}
+		final String name = token.getToken();
+		this.lengths |= lengthBit(name.length());
+		final char first = name.charAt(0);
+		if (first < 64) {
+			this.lowFirstChars |= 1L << first;
+		} else if (first < 128) {
+			this.highFirstChars |= 1L << (first - 64);
+		} else {
+			this.otherFirstChars = true;
+		}
+	}
+
+	/**
+	 * @return the token with the given name or null if there is none
+	 */
+	Token get(CharSequence name) {
+		final int length = name.length();
+		if (length == 0 || (this.lengths & lengthBit(length)) == 0 || !mightStartWith(name.charAt(0))) {
+			return null;
+		}
+		final int hash = hash(name);
+		final int mask = this.tokens.length - 1;
+		int slot = spread(hash) & mask;
+		Token token;
+		while ((token = this.tokens[slot]) != null) {
+			if (this.hashes[slot] == hash && matches(token.getToken(), name)) {
+				return token;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	private boolean mightStartWith(final char c) {
+		if (c < 64) {
+			return (this.lowFirstChars & (1L << c)) != 0;
+		}
+		if (c < 128) {
+			return (this.highFirstChars & (1L << (c - 64))) != 0;
+		}
+		return this.otherFirstChars;
+	}
+
+	/**
+	 * @return true if a new name was added, false if a token was replaced
+	 */
+	private static boolean insert(Token[] tokens, int[] hashes, Token token) {
+		final String name = token.getToken();
+		final int hash = name.hashCode();
+		final int mask = tokens.length - 1;
+		int slot = spread(hash) & mask;
+		while (tokens[slot] != null) {
+			if (hashes[slot] == hash && tokens[slot].getToken().equals(name)) {
+				tokens[slot] = token;
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		tokens[slot] = token;
+		hashes[slot] = hash;
+		return true;
+	}
+
+	private void resize(int capacity) {
+		final Token[] tokens = new Token[capacity];
+		final int[] hashes = new int[capacity];
+		for (Token token : this.tokens) {
+			if (token != null) {
+				insert(tokens, hashes, token);
+			}
+		}
+		this.tokens = tokens;
+		this.hashes = hashes;
+	}
+
+	private static long lengthBit(final int length) {
+		return 1L << Math.min(length, 63);
+	}
+
+	private static int hash(final CharSequence name) {
+		if (name instanceof String) {
+			return name.hashCode();
+		}
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			hash = 31 * hash + name.charAt(i);
+		}
+		return hash;
+	}
+
+	private static int spread(final int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(final String name, final CharSequence candidate) {
+		final int length = name.length();
+		if (length != candidate.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != candidate.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "TokenTable [size=" + this.size + ", capacity=" + this.tokens.length + "]";
+	}
+}
@@ -16,13 +16,26 @@
 
 package de.marcelsauer.tokenreplacer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p>
  * Toky is a token replacer for Strings. It will replace the found token with a
  * provided static value or a dynamically generated value created by a
  * {@link Generator}. Toky itself <b>IS NOT THREAD SAFE</b>. so handling Toky in
- * a multi threaded environment should be synchronized by the client.
+ * a multi threaded environment should be synchronized by the client or an
+ * immutable copy should be created via {@link #freeze()} once all tokens are
+ * registered. the copy can be shared between threads without locking.
  * </p>
  * 
  * <p>
@@ -74,6 +87,22 @@ package de.marcelsauer.tokenreplacer;
  * toky.substitute(&quot;i can count to {number(a,b,c)}&quot;);
  * </pre>
  * 
+ * <p>
+ * a <b>{@link StatelessGenerator}</b> gets the arguments passed directly, so
+ * it does not need to store them and can be called by several threads at the
+ * same time.
+ * </p>
+ * 
+ * <pre>
+ * toky.register(&quot;number&quot;, new StatelessGenerator() {
+ * 
+ * 	&#064;Override
+ * 	public String generate(String[] args) {
+ * 		return args[0] + args[1] + args[2];
+ * 	}
+ * });
+ * </pre>
+ * 
  * if you prefer to use <b>index based tokens</b>, you can also use this:
  * 
  * <pre>
@@ -81,6 +110,75 @@ package de.marcelsauer.tokenreplacer;
  * toky.substitute(&quot;abc {0} {1} {2} def&quot;)); // will produce &quot;abc one two three def&quot;
  * </pre>
  * 
+ * or pass the values along with the template, they are not registered so one
+ * replacer can be shared by all callers:
+ * 
+ * <pre>
+ * toky.substitute(&quot;abc {0} {1} def&quot;, &quot;one&quot;, 2); // will produce &quot;abc one 2 def&quot;
+ * </pre>
+ * 
+ * <p>
+ * if you render the same template over and over again you can <b>compile</b>
+ * it once and skip parsing on every call. values and generators are still
+ * looked up whenever the template is rendered.
+ * </p>
+ * 
+ * <pre>
+ * CompiledTemplate template = toky.compile(&quot;i can count to {number}&quot;);
+ * template.render();
+ * </pre>
+ * 
+ * <p>
+ * large inputs can be <b>streamed</b>, they are read in chunks and never held
+ * in memory as a whole. if the text is already in memory, e.g. in a
+ * {@link StringBuilder}, it can be substituted into any {@link Appendable}
+ * without copying it to a String first. UTF-8 (and single byte) files are
+ * memory mapped and UTF-8 (and single byte) encoded bytes are substituted
+ * directly, only the tokens are decoded.
+ * </p>
+ * 
+ * <pre>
+ * toky.substituteTo(stringBuilder, writer);
+ * toky.substitute(reader, writer);
+ * toky.substitute(inputStream, outputStream, Charset.forName(&quot;UTF-8&quot;));
+ * toky.substitute(inputFile, outputFile, Charset.forName(&quot;UTF-8&quot;));
+ * byte[] result = toky.substitute(utf8Bytes, Charset.forName(&quot;UTF-8&quot;));
+ * </pre>
+ * 
+ * <p>
+ * templates used again and again can also be kept in a <b>template cache</b>,
+ * then {@link #substitute(String)} parses them only once.
+ * </p>
+ * 
+ * <pre>
+ * toky.withTemplateCache(1000);
+ * </pre>
+ * 
+ * <p>
+ * when substituting <b>many strings</b> reuse the internal buffers, either
+ * with a {@link Substitutor} (one per thread) or with a batch that collects
+ * the failures instead of aborting.
+ * </p>
+ * 
+ * <pre>
+ * Substitutor substitutor = toky.newSubstitutor();
+ * String result = substitutor.substitute(message);
+ * BatchResult results = toky.substituteAll(messages);
+ * </pre>
+ * 
+ * <p>
+ * input that arrives in <b>chunks</b>, e.g. in a non-blocking server, can be
+ * substituted chunk by chunk with a {@link ChunkSubstitutor}. the output is
+ * returned as soon as it is known, only a token cut off at the end of a chunk
+ * is kept until the next one.
+ * </p>
+ * 
+ * <pre>
+ * ChunkSubstitutor substitutor = toky.newChunkSubstitutor();
+ * send(substitutor.process(chunk));
+ * send(substitutor.finish());
+ * </pre>
+ * 
  * <p>
  * of course you can replace all default <b>delimiters</b> with your preferred
  * ones, just make sure start and end are different.
@@ -95,6 +193,28 @@ package de.marcelsauer.tokenreplacer;
  * </pre>
  * 
  * <p>
+ * token start and end may be <b>longer than one char</b> and several
+ * <b>dialects</b> can be recognized in one pass.
+ * </p>
+ * 
+ * <pre>
+ * toky.withTokenStart(&quot;${&quot;).withTokenEnd(&quot;}&quot;);
+ * toky.withAdditionalTokenDelimiters(&quot;{{&quot;, &quot;}}&quot;);
+ * toky.withAdditionalTokenDelimiters(&quot;%&quot;, &quot;%&quot;);
+ * toky.substitute(&quot;${a} {{a}} %a%&quot;);
+ * </pre>
+ * 
+ * <p>
+ * the registered token names can also be replaced as <b>plain text</b>
+ * without any delimiters, all names are searched in a single pass.
+ * </p>
+ * 
+ * <pre>
+ * toky.register(&quot;ACME-1&quot;, &quot;Anvil&quot;).register(&quot;ACME-12&quot;, &quot;Rocket&quot;);
+ * toky.substituteLiterals(&quot;ACME-1, ACME-12&quot;); // will produce &quot;Anvil, Rocket&quot;
+ * </pre>
+ * 
+ * <p>
  * by default Toky will throw IllegalStateExceptions if there was no matching
  * value or generator found for a token. you can <b>enable/disable generating
  * exceptions</b>.
@@ -115,7 +235,7 @@ package de.marcelsauer.tokenreplacer;
  * <p>
  * you can <b>enable/disable generator caching</b>. if you enable caching once a
  * generator for a token returned a value this value will be used for all
- * subsequent tokens with the same name otherwise the generator will be called
+ * subsequent tokens with the same name (and arguments) otherwise the generator will be called
  * once for every token. <br/>
  * <br/>
  * 
@@ -132,6 +252,37 @@ package de.marcelsauer.tokenreplacer;
  * toky.disableGeneratorCaching();
  * </pre>
  * 
+ * <p>
+ * values may contain tokens themselves if <b>nested expansion</b> is enabled.
+ * they are expanded recursively in the same pass, a value containing itself
+ * results in a {@link CyclicTokenException}.
+ * </p>
+ * 
+ * <pre>
+ * toky.register(&quot;greeting&quot;, &quot;Hello {name}&quot;).register(&quot;name&quot;, &quot;Joe&quot;);
+ * toky.enableNestedExpansion(8); // values nested at most 8 levels deep
+ * toky.substitute(&quot;{greeting}!&quot;); // will produce &quot;Hello Joe!&quot;
+ * </pre>
+ * 
+ * <p>
+ * values that stay valid across calls, e.g. exchange rates, can be kept in a
+ * {@link GeneratorCache} with a maximum size and a time to live.
+ * </p>
+ * 
+ * <pre>
+ * toky.withGeneratorCache(new LruGeneratorCache(1000).withTimeToLive(&quot;fxRate&quot;, 5, TimeUnit.SECONDS));
+ * </pre>
+ * 
+ * <p>
+ * to see which tokens are hot and which generators are slow register a
+ * {@link ReplacerListener}, {@link JmxReplacerListener} exposes the counters
+ * through JMX.
+ * </p>
+ * 
+ * <pre>
+ * toky.withListener(jmxReplacerListener);
+ * </pre>
+ * 
  * @author msauer
  */
 public class Toky implements TokenReplacer {
@@ -198,6 +349,196 @@ public class Toky implements TokenReplacer {
 		return this.impl.substitute(toSubstitute);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.lang.String,
+	 * java.lang.Object[])
+	 */
+	@Override
+	public String substitute(String template, Object... values) {
+		return this.impl.substitute(template, values);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteTo(java.lang.CharSequence
+	 * , java.lang.Appendable)
+	 */
+	@Override
+	public void substituteTo(CharSequence in, Appendable out) throws IOException {
+		this.impl.substituteTo(in, out);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteLiterals(java.lang
+	 * .String)
+	 */
+	@Override
+	public String substituteLiterals(String toSubstitute) {
+		return this.impl.substituteLiterals(toSubstitute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteLiteralsTo(java.
+	 * lang.CharSequence, java.lang.Appendable)
+	 */
+	@Override
+	public void substituteLiteralsTo(CharSequence in, Appendable out) throws IOException {
+		this.impl.substituteLiteralsTo(in, out);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#newSubstitutor()
+	 */
+	@Override
+	public Substitutor newSubstitutor() {
+		return this.impl.newSubstitutor();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#newChunkSubstitutor()
+	 */
+	@Override
+	public ChunkSubstitutor newChunkSubstitutor() {
+		return this.impl.newChunkSubstitutor();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substituteAll(java.util.List)
+	 */
+	@Override
+	public BatchResult substituteAll(List<String> toSubstitute) {
+		return this.impl.substituteAll(toSubstitute);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substituteAll(java.util.List,
+	 * java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public BatchResult substituteAll(List<String> toSubstitute, ExecutorService executor) {
+		return this.impl.substituteAll(toSubstitute, executor);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteParallel(java.lang
+	 * .String, java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public String substituteParallel(String toSubstitute, ExecutorService executor) {
+		return this.impl.substituteParallel(toSubstitute, executor);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substituteAsync(java.lang.
+	 * String, java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public Future<String> substituteAsync(String toSubstitute, ExecutorService executor) {
+		return this.impl.substituteAsync(toSubstitute, executor);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.Reader,
+	 * java.io.Writer)
+	 */
+	@Override
+	public void substitute(Reader in, Writer out) throws IOException {
+		this.impl.substitute(in, out);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.InputStream,
+	 * java.io.OutputStream, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(InputStream in, OutputStream out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.io.File,
+	 * java.io.File, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(File in, File out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(byte[],
+	 * java.nio.charset.Charset)
+	 */
+	@Override
+	public byte[] substitute(byte[] in, Charset charset) {
+		return this.impl.substitute(in, charset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#substitute(java.nio.ByteBuffer,
+	 * java.io.OutputStream, java.nio.charset.Charset)
+	 */
+	@Override
+	public void substitute(ByteBuffer in, OutputStream out, Charset charset) throws IOException {
+		this.impl.substitute(in, out, charset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#compile(java.lang.String)
+	 */
+	@Override
+	public CompiledTemplate compile(String template) {
+		return this.impl.compile(template);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#freeze()
+	 */
+	@Override
+	public TokenReplacer freeze() {
+		return this.impl.freeze();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -245,6 +586,18 @@ public class Toky implements TokenReplacer {
 		return this.impl.withTokenEnd(tokenEnd);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withAdditionalTokenDelimiters
+	 * (java.lang.String, java.lang.String)
+	 */
+	@Override
+	public TokenReplacer withAdditionalTokenDelimiters(String tokenStart, String tokenEnd) {
+		return this.impl.withAdditionalTokenDelimiters(tokenStart, tokenEnd);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -269,6 +622,18 @@ public class Toky implements TokenReplacer {
 		return this.impl.register(token, Generator);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#register(java.lang.String,
+	 * de.marcelsauer.tokenreplacer.StatelessGenerator)
+	 */
+	@Override
+	public TokenReplacer register(String token, StatelessGenerator generator) {
+		return this.impl.register(token, generator);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -310,6 +675,134 @@ public class Toky implements TokenReplacer {
 		return this.impl.disableGeneratorCaching();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#enableNestedExpansion(int)
+	 */
+	@Override
+	public TokenReplacer enableNestedExpansion(int maxDepth) {
+		return this.impl.enableNestedExpansion(maxDepth);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#disableNestedExpansion()
+	 */
+	@Override
+	public TokenReplacer disableNestedExpansion() {
+		return this.impl.disableNestedExpansion();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withGeneratorCache(de.marcelsauer
+	 * .tokenreplacer.GeneratorCache)
+	 */
+	@Override
+	public TokenReplacer withGeneratorCache(GeneratorCache cache) {
+		return this.impl.withGeneratorCache(cache);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutGeneratorCache()
+	 */
+	@Override
+	public TokenReplacer withoutGeneratorCache() {
+		return this.impl.withoutGeneratorCache();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withDictionary(de.marcelsauer
+	 * .tokenreplacer.CompactDictionary)
+	 */
+	@Override
+	public TokenReplacer withDictionary(CompactDictionary dictionary) {
+		return this.impl.withDictionary(dictionary);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutDictionary()
+	 */
+	@Override
+	public TokenReplacer withoutDictionary() {
+		return this.impl.withoutDictionary();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withTemplateCache(int)
+	 */
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize) {
+		return this.impl.withTemplateCache(maximumSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withTemplateCache(int,
+	 * long)
+	 */
+	@Override
+	public TokenReplacer withTemplateCache(int maximumSize, long maximumChars) {
+		return this.impl.withTemplateCache(maximumSize, maximumChars);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutTemplateCache()
+	 */
+	@Override
+	public TokenReplacer withoutTemplateCache() {
+		return this.impl.withoutTemplateCache();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#getTemplateCacheStats()
+	 */
+	@Override
+	public TemplateCacheStats getTemplateCacheStats() {
+		return this.impl.getTemplateCacheStats();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.marcelsauer.tokenreplacer.TokenReplacer#withListener(de.marcelsauer.
+	 * tokenreplacer.ReplacerListener)
+	 */
+	@Override
+	public TokenReplacer withListener(ReplacerListener listener) {
+		return this.impl.withListener(listener);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#withoutListener()
+	 */
+	@Override
+	public TokenReplacer withoutListener() {
+		return this.impl.withoutListener();
+	}
+
 	/* (non-Javadoc)
 	 * @see de.marcelsauer.tokenreplacer.TokenReplacer#register(java.lang.String[])
 	 */
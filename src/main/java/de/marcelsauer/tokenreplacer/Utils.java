@@ -29,4 +29,20 @@ final class Utils {
 		return buffer.toString().replaceFirst(",$", "");
 	}
 
+	/**
+	 * @return the token name followed by the arguments, separated by
+	 *         {@link Constants#DEFAULT_END_OF_STRING} which can not be part of a token
+	 *         or its arguments
+	 */
+	static String cacheKey(String tokenName, String[] args) {
+		if (args.length == 0) {
+			return tokenName;
+		}
+		StringBuilder key = new StringBuilder(tokenName);
+		for (String arg : args) {
+			key.append(Constants.DEFAULT_END_OF_STRING).append(arg);
+		}
+		return key.toString();
+	}
+
 }
@@ -36,8 +36,12 @@ final class Validate {
 	}
 
 	static void isTrue(boolean test) {
+		isTrue(test, "given condition was not true!");
+	}
+
+	static void isTrue(boolean test, String message) {
 		if (!test) {
-			throw new IllegalArgumentException("given condition was not true!");
+			throw new IllegalArgumentException(message);
 		}
 	}
 
@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class AsyncSubstitutionTest {
+
+	private static final int TOKENS = 5;
+
+	private final TokenReplacer toky = new Toky();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	// never released, generators waiting for it hang until they are cancelled
+	private final CountDownLatch never = new CountDownLatch(1);
+
+	@After
+	public void tearDown () {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void thatGeneratorsRunAtTheSameTime () throws Exception {
+		final CountDownLatch allRunning = new CountDownLatch(TOKENS);
+		this.toky.register("slow", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				allRunning.countDown();
+				try {
+					// only returns if all generators are running at once
+					if (!allRunning.await(10, TimeUnit.SECONDS)) {
+						return "sequential";
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "v" + args[0];
+			}
+		}).register("static", "s");
+		StringBuilder template = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < TOKENS; i++) {
+			template.append("{slow(").append(i).append(")} {static} ");
+			expected.append("v").append(i).append(" s ");
+		}
+		assertEquals(expected.toString(), this.toky.substituteAsync(template.toString(), this.executor).get());
+		assertEquals(expected.toString(),
+				this.toky.compile(template.toString()).renderAsync(this.executor).get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void thatASingleThreadIsEnough () throws Exception {
+		ExecutorService singleThread = Executors.newSingleThreadExecutor();
+		try {
+			this.toky.register("a", new StatelessGenerator() {
+
+				@Override
+				public String generate (String[] args) {
+					return args[0];
+				}
+			});
+			assertEquals("1 2 3", this.toky.substituteAsync("{a(1)} {a(2)} {a(3)}", singleThread).get());
+		} finally {
+			singleThread.shutdownNow();
+		}
+	}
+
+	@Test
+	public void thatTheFallbackIsUsedOnTimeoutAndFailure () throws Exception {
+		this.toky.register(new Token("hanging").replacedBy(hangingGenerator()).withTimeout(50, TimeUnit.MILLISECONDS)
+				.withFallback("n/a"));
+		this.toky.register(new Token("failing").replacedBy(failingGenerator()).withFallback("oops"));
+		this.toky.register("fast", "fast");
+		assertEquals("fast n/a oops", this.toky.substituteAsync("{fast} {hanging} {failing}", this.executor).get());
+	}
+
+	@Test
+	public void thatATimeoutWithoutFallbackFails () throws Exception {
+		JmxReplacerListener listener = new JmxReplacerListener();
+		this.toky.withListener(listener);
+		this.toky.register(new Token("hanging").replacedBy(hangingGenerator()).withTimeout(50, TimeUnit.MILLISECONDS));
+		Future<String> result = this.toky.substituteAsync("{hanging}", this.executor);
+		try {
+			result.get();
+			fail("expected ExecutionException");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof GeneratorTimeoutException);
+		}
+		assertEquals(1, listener.getGeneratorTimeoutCount());
+		assertEquals(0, listener.getParseExceptionCount());
+	}
+
+	@Test
+	public void thatAFailureWithoutFallbackFails () throws Exception {
+		this.toky.register(new Token("failing").replacedBy(failingGenerator()));
+		try {
+			this.toky.substituteAsync("{failing}", this.executor).get();
+			fail("expected ExecutionException");
+		} catch (ExecutionException expected) {
+			assertEquals("generator failed", expected.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void thatTheWholeSubstitutionCanTimeOutAndBeCancelled () throws Exception {
+		this.toky.register(new Token("hanging").replacedBy(hangingGenerator()));
+		Future<String> result = this.toky.substituteAsync("{hanging}", this.executor);
+		try {
+			result.get(20, TimeUnit.MILLISECONDS);
+			fail("expected TimeoutException");
+		} catch (TimeoutException expected) {
+			// expected
+		}
+		assertTrue(result.cancel(true));
+		assertTrue(result.isCancelled());
+		assertTrue(result.isDone());
+	}
+
+	@Test(timeout = 10000)
+	public void thatEveryCallerGivesUpAtItsOwnTimeout () throws Exception {
+		this.toky.register(new Token("hanging").replacedBy(hangingGenerator()));
+		final Future<String> result = this.toky.substituteAsync("{hanging}", this.executor);
+		final CountDownLatch waiting = new CountDownLatch(1);
+		this.executor.submit(new Callable<String>() {
+
+			@Override
+			public String call () throws Exception {
+				waiting.countDown();
+				return result.get();
+			}
+		});
+		waiting.await();
+		Thread.sleep(50);
+		try {
+			result.get(20, TimeUnit.MILLISECONDS);
+			fail("expected TimeoutException");
+		} catch (TimeoutException expected) {
+			// expected
+		}
+		result.cancel(true);
+	}
+
+	@Test
+	public void thatNestedValuesAreExpanded () throws Exception {
+		this.toky.register("greeting", "Hello {name}").register("name", "Bob").register("wrapped",
+				new StatelessGenerator() {
+
+					@Override
+					public String generate (String[] args) {
+						return "[{greeting}]";
+					}
+				}).enableNestedExpansion(3);
+		String template = "{greeting}, {wrapped} {name}";
+		assertEquals("Hello Bob, [Hello Bob] Bob", this.toky.substitute(template));
+		assertEquals("Hello Bob, [Hello Bob] Bob", this.toky.substituteAsync(template, this.executor).get());
+		this.toky.register("self", "{self}");
+		try {
+			this.toky.substituteAsync("{self}", this.executor).get();
+			fail("expected ExecutionException");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof CyclicTokenException);
+		}
+	}
+
+	@Test(expected = NoValueOrGeneratorFoundException.class)
+	public void thatMissingValuesResultInExceptionRightAway () {
+		this.toky.substituteAsync("{missing}", this.executor);
+	}
+
+	private StatelessGenerator hangingGenerator () {
+		return new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				try {
+					AsyncSubstitutionTest.this.never.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "too late";
+			}
+		};
+	}
+
+	private StatelessGenerator failingGenerator () {
+		return new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				throw new IllegalStateException("generator failed");
+			}
+		};
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class BatchSubstitutionTest {
+
+	private final TokenReplacer toky = new Toky();
+	private ExecutorService executor;
+
+	@Before
+	public void setUp () {
+		this.executor = Executors.newFixedThreadPool(4);
+		this.toky.register("static", "static value");
+		this.toky.register("sum", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				int sum = 0;
+				for (String arg : args) {
+					sum += Integer.parseInt(arg);
+				}
+				return String.valueOf(sum);
+			}
+		});
+	}
+
+	@After
+	public void tearDown () {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void thatSubstitutorCanBeReused () {
+		Substitutor substitutor = this.toky.newSubstitutor();
+		assertEquals("static value 3", substitutor.substitute("{static} {sum(1,2)}"));
+		assertEquals("7", substitutor.substitute("{sum(3,4)}"));
+		assertEquals("", substitutor.substitute(""));
+		assertNull(substitutor.substitute(null));
+	}
+
+	@Test
+	public void thatSubstitutorCanBeReusedAfterAFailure () {
+		Substitutor substitutor = this.toky.newSubstitutor();
+		try {
+			substitutor.substitute("abc {static(1,");
+			fail("expected ParseException");
+		} catch (ParseException expected) {
+			assertEquals(14, expected.getPosition());
+		}
+		assertEquals("static value", substitutor.substitute("{static}"));
+		try {
+			substitutor.substitute("ab {static");
+			fail("expected ParseException");
+		} catch (ParseException expected) {
+			assertEquals(10, expected.getPosition());
+		}
+	}
+
+	@Test
+	public void thatSubstitutorWritesIntoArraysOnlyIfTheResultFits () {
+		Substitutor substitutor = this.toky.newSubstitutor();
+		char[] out = "xxxxxxxxxxxxxxxx".toCharArray();
+		assertEquals(14, substitutor.substituteTo("[{static}]", out, 2));
+		assertEquals("xx[static value]", new String(out));
+
+		out = "xxxxx".toCharArray();
+		assertEquals(14, substitutor.substituteTo(new StringBuilder("[{static}]"), out, 0));
+		assertEquals("xxxxx", new String(out));
+		assertEquals(0, substitutor.substituteTo("", out, 5));
+	}
+
+	@Test
+	public void thatSubstitutorWritesIntoCharBuffersOnlyIfTheResultFits () {
+		Substitutor substitutor = this.toky.newSubstitutor();
+		for (CharBuffer out : new CharBuffer[] { CharBuffer.allocate(20), ByteBuffer.allocateDirect(40).asCharBuffer() }) {
+			out.put("ab");
+			assertTrue(substitutor.substituteTo("{sum(1,2)} {static}", out));
+			assertFalse(substitutor.substituteTo("{static} {static}", out));
+			out.flip();
+			assertEquals("ab3 static value", out.toString());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatInvalidOffsetResultsInException () {
+		this.toky.newSubstitutor().substituteTo("abc", new char[3], 4);
+	}
+
+	@Test
+	public void thatFailuresDoNotAbortTheBatch () {
+		List<String> toSubstitute = Arrays.asList("{static}", "{static", null, "{unknown}", "{sum(1,1)}");
+		BatchResult result = this.toky.substituteAll(toSubstitute);
+		assertTrue(result.hasFailures());
+		assertEquals(Arrays.asList("static value", null, null, null, "2"), result.getResults());
+		assertEquals(Arrays.asList(1, 3), new ArrayList<Integer>(result.getFailures().keySet()));
+		assertTrue(result.getFailures().get(1) instanceof ParseException);
+		assertTrue(result.getFailures().get(3) instanceof NoValueOrGeneratorFoundException);
+	}
+
+	@Test
+	public void thatParallelBatchKeepsTheOrder () {
+		List<String> toSubstitute = new ArrayList<String>();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			if (i % 100 == 0) {
+				toSubstitute.add("{broken");
+				expected.add(null);
+			} else {
+				toSubstitute.add("{static} {sum(" + i + ",1)}");
+				expected.add("static value " + (i + 1));
+			}
+		}
+		BatchResult result = this.toky.substituteAll(toSubstitute, this.executor);
+		assertEquals(expected, result.getResults());
+		assertEquals(20, result.getFailures().size());
+		assertEquals(result.getResults(), this.toky.substituteAll(toSubstitute).getResults());
+	}
+
+	@Test
+	public void thatEmptyBatchWorks () {
+		assertFalse(this.toky.substituteAll(new ArrayList<String>()).hasFailures());
+		assertTrue(this.toky.substituteAll(new ArrayList<String>(), this.executor).getResults().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatNullBatchResultsInException () {
+		this.toky.substituteAll(null);
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class ChunkSubstitutorTest {
+
+	private static final String TEMPLATE = "hello {name}, {sum(1,2)} and {name} again";
+	private static final String EXPECTED = "hello joe, 3 and joe again";
+
+	private Toky toky;
+
+	@Before
+	public void setUp () {
+		this.toky = new Toky();
+		this.toky.register("name", "joe");
+		this.toky.register("sum", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return String.valueOf(Integer.parseInt(args[0]) + Integer.parseInt(args[1]));
+			}
+		});
+	}
+
+	@Test
+	public void thatTokensCanSpanChunkBoundaries () {
+		for (int chunkSize = 1; chunkSize <= TEMPLATE.length(); chunkSize++) {
+			assertEquals(EXPECTED, substituteInChunks(this.toky.newChunkSubstitutor(), TEMPLATE, chunkSize));
+		}
+	}
+
+	@Test
+	public void thatLiteralTextIsEmittedBeforeTheTokenIsComplete () {
+		ChunkSubstitutor substitutor = this.toky.newChunkSubstitutor();
+		assertEquals("hello ", substitutor.process("hello {na"));
+		assertEquals("joe", substitutor.process("me}"));
+		assertEquals("", substitutor.finish());
+	}
+
+	@Test
+	public void thatMultiCharDelimitersCanSpanChunkBoundaries () {
+		this.toky.withTokenStart("${").withAdditionalTokenDelimiters("{{", "}}");
+		String template = "$ ${name} {{name}} {x";
+		for (int chunkSize = 1; chunkSize <= template.length(); chunkSize++) {
+			assertEquals("$ joe joe {x", substituteInChunks(this.toky.newChunkSubstitutor(), template, chunkSize));
+		}
+	}
+
+	@Test
+	public void thatOutputCanBeAppended () throws Exception {
+		ChunkSubstitutor substitutor = this.toky.newChunkSubstitutor();
+		StringWriter out = new StringWriter();
+		substitutor.process("hello {na", out);
+		substitutor.process("me}", out);
+		substitutor.finish(out);
+		assertEquals("hello joe", out.toString());
+	}
+
+	@Test
+	public void thatUnfinishedTokenResultsInParseExceptionAtTheEnd () {
+		ChunkSubstitutor substitutor = this.toky.newChunkSubstitutor();
+		assertEquals("0123", substitutor.process("0123{na"));
+		assertEquals("", substitutor.process("me"));
+		try {
+			substitutor.finish();
+			fail("expected ParseException");
+		} catch (ParseException expected) {
+			assertEquals(9, expected.getPosition());
+		}
+		// the next stream starts from scratch
+		assertEquals("joe", substitutor.process("{name}") + substitutor.finish());
+	}
+
+	@Test
+	public void thatSubstitutorCanBeReusedAfterFinish () {
+		ChunkSubstitutor substitutor = this.toky.newChunkSubstitutor();
+		assertEquals(EXPECTED, substituteInChunks(substitutor, TEMPLATE, 3));
+		assertEquals(EXPECTED, substituteInChunks(substitutor, TEMPLATE, 5));
+		assertEquals("", substitutor.finish());
+	}
+
+	@Test
+	public void thatFrozenReplacerCreatesChunkSubstitutors () {
+		assertEquals(EXPECTED, substituteInChunks(this.toky.freeze().newChunkSubstitutor(), TEMPLATE, 4));
+	}
+
+	private String substituteInChunks (ChunkSubstitutor substitutor, String template, int chunkSize) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < template.length(); i += chunkSize) {
+			result.append(substitutor.process(template.substring(i, Math.min(template.length(), i + chunkSize))));
+		}
+		return result.append(substitutor.finish()).toString();
+	}
+}
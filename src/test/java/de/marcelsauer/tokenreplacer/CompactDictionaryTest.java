@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class CompactDictionaryTest {
+
+	private static final int ENTRIES = 20000;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Test
+	public void thatValuesCanBeAddedAndReplaced () {
+		CompactDictionary dictionary = new CompactDictionary();
+		dictionary.put("a", "1").put("b", "").put("ü", "€");
+		assertEquals("1", dictionary.get("a"));
+		assertEquals("", dictionary.get("b"));
+		assertEquals("€", dictionary.get(new StringBuilder("ü")));
+		assertNull(dictionary.get("c"));
+		assertNull(dictionary.get(""));
+		dictionary.put("a", "2");
+		assertEquals("2", dictionary.get("a"));
+		assertEquals(3, dictionary.size());
+	}
+
+	@Test
+	public void thatDictionaryGrowsOnAndOffHeap () {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			CompactDictionary dictionary = new CompactDictionary(0, offHeap);
+			Map<String, String> expected = new HashMap<String, String>();
+			Random random = new Random(offHeap ? 1 : 2);
+			for (int i = 0; i < ENTRIES; i++) {
+				String token = "token" + random.nextInt(ENTRIES);
+				String value = "value" + i;
+				dictionary.put(token, value);
+				expected.put(token, value);
+			}
+			assertEquals(expected.size(), dictionary.size());
+			for (Map.Entry<String, String> entry : expected.entrySet()) {
+				assertEquals(entry.getValue(), dictionary.get(entry.getKey()));
+			}
+			assertNull(dictionary.get("token" + ENTRIES));
+		}
+	}
+
+	@Test
+	public void thatTokensAreLookedUpInTheDictionary () throws Exception {
+		CompactDictionary dictionary = new CompactDictionary(ENTRIES, true).put("name", "joe").put("city", "Köln");
+		TokenReplacer toky = new Toky().register("city", "Berlin").withDictionary(dictionary);
+		String template = "{name} from {city}";
+		String expected = "joe from Berlin";
+		assertEquals(expected, toky.substitute(template));
+		assertEquals(expected, toky.compile(template).render());
+		assertEquals(expected, toky.freeze().substitute(template));
+		assertEquals(expected, new String(toky.substitute(template.getBytes(UTF_8), UTF_8), UTF_8));
+		StringWriter out = new StringWriter();
+		toky.substitute(new StringReader(template), out);
+		assertEquals(expected, out.toString());
+		toky.withTokenStart("${").withAdditionalTokenDelimiters("{{", "}}");
+		assertEquals("joe joe", toky.substitute("${name} {{name}}"));
+	}
+
+	@Test
+	public void thatFrozenReplacerIsNotAffectedByLaterChangesOfTheDictionary () {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			CompactDictionary dictionary = new CompactDictionary(0, offHeap).put("name", "joe");
+			TokenReplacer frozen = new Toky().withDictionary(dictionary).ignoreMissingValues().freeze();
+			dictionary.put("name", "ann");
+			for (int i = 0; i < ENTRIES; i++) {
+				dictionary.put("token" + i, "value" + i);
+			}
+			assertEquals("joe {token1}", frozen.substitute("{name} {token1}"));
+		}
+	}
+
+	@Test
+	public void thatTokensWithArgumentsAreNotLookedUpInTheDictionary () {
+		TokenReplacer toky = new Toky().withDictionary(new CompactDictionary().put("name", "joe")).ignoreMissingValues();
+		assertEquals("{name(1)} joe", toky.substitute("{name(1)} {name}"));
+		toky.withoutDictionary();
+		assertEquals("{name}", toky.substitute("{name}"));
+	}
+
+	@Test(expected = NoValueOrGeneratorFoundException.class)
+	public void thatTokensMissingInTheDictionaryResultInException () {
+		new Toky().withDictionary(new CompactDictionary().put("name", "joe")).substitute("{other}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatEmptyTokenResultsInException () {
+		new CompactDictionary().put("", "value");
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author msauer
+ */
+public class CompiledTemplateTest {
+
+	private final TokenReplacer toky = new Toky();
+
+	@Test
+	public void thatCompiledTemplateRendersLikeSubstitute () {
+		this.toky.register("static", "static value");
+		this.toky.register("dynamicValue", new ConcatGenerator());
+		String template = "a {static} b {dynamicValue(1,2,3)} c {dynamicValue()} ";
+		assertEquals(this.toky.substitute(template), this.toky.compile(template).render());
+		assertEquals("a static value b 123 c  ", this.toky.compile(template).render());
+	}
+
+	@Test
+	public void thatValuesAreLookedUpOnRender () {
+		CompiledTemplate template = this.toky.compile("i can count to {number}");
+		this.toky.register("number", "1");
+		assertEquals("i can count to 1", template.render());
+		this.toky.register("number", "2");
+		assertEquals("i can count to 2", template.render());
+	}
+
+	@Test
+	public void thatPositionalValuesAreResolvedByIndex () {
+		this.toky.register("currency", "EUR");
+		CompiledTemplate template = this.toky.compile("{0} owes {1} {currency}");
+		assertEquals("joe owes 12 EUR", template.render("joe", 12));
+		assertEquals("ann owes null EUR", template.render("ann", null));
+		assertEquals("a b c", this.toky.substitute("{0} {1} {0010}", "a", "b", null, null, null, null, null, null, null,
+				null, "c"));
+		assertEquals("a b", this.toky.freeze().substitute("{0} {1}", "a", "b"));
+	}
+
+	@Test
+	public void thatPositionalValuesTakePrecedenceOverRegisteredIndexes () {
+		this.toky.register(new String[] { "one", "two" });
+		assertEquals("x two", this.toky.substitute("{0} {1}", "x"));
+		assertEquals("one two", this.toky.substitute("{0} {1}"));
+	}
+
+	@Test
+	public void thatNumericTokensWithArgumentsOrBeyondTheValuesAreNotPositional () {
+		this.toky.ignoreMissingValues();
+		assertEquals("a {1} {0(x)} {-1}", this.toky.substitute("{0} {1} {0(x)} {-1}", "a"));
+		assertEquals(null, this.toky.substitute(null, "a"));
+	}
+
+	@Test(expected = NoValueOrGeneratorFoundException.class)
+	public void thatMissingPositionalValueResultsInException () {
+		this.toky.substitute("{0} {1}", "a");
+	}
+
+	@Test
+	public void thatTemplateWithoutTokensWorks () {
+		assertEquals("", this.toky.compile("").render());
+		assertEquals("abc def", this.toky.compile("abc def").render());
+	}
+
+	@Test
+	public void thatMissingValuesAreKeptWhenIgnored () {
+		this.toky.ignoreMissingValues();
+		assertEquals("{a} {b(1,2)}", this.toky.compile("{a} {b(1,2)}").render());
+	}
+
+	@Test(expected = NoValueOrGeneratorFoundException.class)
+	public void thatMissingValuesResultInExceptionOnRender () {
+		this.toky.doNotIgnoreMissingValues();
+		this.toky.compile("{value}").render();
+	}
+
+	@Test(expected = ParseException.class)
+	public void thatInvalidTemplateResultsInExceptionOnCompile () {
+		this.toky.compile("{value(1,)}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatNullTemplateResultsInException () {
+		this.toky.compile(null);
+	}
+
+	@Test
+	public void thatGeneratorCachingWorksPerRender () {
+		Generator generator = Mockito.mock(Generator.class);
+		this.toky.register("random", generator).enableGeneratorCaching();
+		CompiledTemplate template = this.toky.compile("{random} {random}");
+		template.render();
+		template.render();
+		verify(generator, times(2)).generate();
+	}
+
+	@Test
+	public void thatArgumentsDoNotLeakIntoFollowingTokens () {
+		this.toky.register("dynamicValue", new ConcatGenerator());
+		assertEquals("1 ", this.toky.compile("{dynamicValue(1)} {dynamicValue}").render());
+		assertEquals("1 ", this.toky.substitute("{dynamicValue(1)} {dynamicValue}"));
+	}
+
+	private class ConcatGenerator implements Generator {
+
+		private String[] args;
+
+		@Override
+		public String generate () {
+			StringBuilder result = new StringBuilder();
+			for (String arg : this.args) {
+				result.append(arg);
+			}
+			return result.toString();
+		}
+
+		@Override
+		public void inject (String[] args) {
+			this.args = args;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class DialectTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final TokenReplacer toky = new Toky();
+
+	@Before
+	public void setUp () {
+		this.toky.register("a", "1").register("concat", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return args[0] + "+" + args[1];
+			}
+		});
+	}
+
+	@Test
+	public void thatMultiCharDelimitersWork () {
+		this.toky.withTokenStart("${").withTokenEnd("}");
+		assertEquals("1 {a} $ } 1+2", this.toky.substitute("${a} {a} $ } ${concat(1,2)}"));
+		this.toky.withTokenStart("{{").withTokenEnd("}}");
+		assertEquals("1 { 1+2 } x", this.toky.substitute("{{a}} { {{concat(1,2)}} } x"));
+	}
+
+	@Test
+	public void thatAllDialectsAreReplacedInOnePass () {
+		this.toky.withAdditionalTokenDelimiters("${", "}").withAdditionalTokenDelimiters("{{", "}}")
+				.withAdditionalTokenDelimiters("%", "%");
+		assertEquals("1 1 1 1 3+4 50", this.toky.substitute("{a} ${a} {{a}} %a% {{concat(3,4)}} 50"));
+		assertEquals("11111", this.toky.substitute("{a}${a}{{a}}%a%{a}"));
+	}
+
+	@Test
+	public void thatSingleCharDelimitersCanBeSetAgain () {
+		this.toky.withTokenStart("<<").withTokenEnd(">>");
+		assertEquals("1", this.toky.substitute("<<a>>"));
+		this.toky.withTokenStart("[").withTokenEnd("]");
+		assertEquals("1 <<a>>", this.toky.substitute("[a] <<a>>"));
+	}
+
+	@Test
+	public void thatMissingValuesAreKeptInTheirDialect () {
+		this.toky.withAdditionalTokenDelimiters("${", "}").withAdditionalTokenDelimiters("%", "%")
+				.ignoreMissingValues();
+		String template = "{b} ${b(1,2)} %b% %a%";
+		assertEquals("{b} ${b(1,2)} %b% 1", this.toky.substitute(template));
+		assertEquals("{b} ${b(1,2)} %b% 1", this.toky.compile(template).render());
+	}
+
+	@Test
+	public void thatAllWaysToSubstituteGiveTheSameResult () throws Exception {
+		this.toky.withTokenStart("${").withAdditionalTokenDelimiters("{{", "}}");
+		String template = "${a} {{concat(1,2)}} ä ${a}";
+		String expected = "1 1+2 ä 1";
+		assertEquals(expected, this.toky.substitute(template));
+		assertEquals(expected, this.toky.compile(template).render());
+		assertEquals(expected, this.toky.newSubstitutor().substitute(template));
+		assertEquals(expected, new String(this.toky.substitute(template.getBytes(UTF_8), UTF_8), UTF_8));
+	}
+
+	@Test
+	public void thatInvalidTokensResultInExceptionAtTheirPosition () {
+		this.toky.withTokenStart("${").withAdditionalTokenDelimiters("{{", "}}");
+		assertParseErrorAt("${a", 3);
+		assertParseErrorAt("{{a} x", 3);
+		assertParseErrorAt("${}", 2);
+		assertParseErrorAt("xx ${a(1,2}", 10);
+		assertParseErrorAt("{{a}", 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatEmptyDelimiterResultsInException () {
+		this.toky.withAdditionalTokenDelimiters("", "}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatAddingTheStartOfTheFirstDialectResultsInException () {
+		this.toky.withAdditionalTokenDelimiters("{", "]");
+	}
+
+	@Test
+	public void thatAddingAnAdditionalStartAgainReplacesItsEnd () {
+		this.toky.withAdditionalTokenDelimiters("%", "%").withAdditionalTokenDelimiters("%", "!");
+		assertEquals("1 1", this.toky.substitute("{a} %a!"));
+	}
+
+	@Test
+	public void thatArgumentDelimitersInAnAdditionalDialectResultInException () {
+		for (String[] dialect : new String[][] { { "(", ")" }, { "<", ")>" }, { "<,", ">" } }) {
+			try {
+				this.toky.withAdditionalTokenDelimiters(dialect[0], dialect[1]);
+				fail(String.format("expected IllegalArgumentException for %s name %s", dialect[0], dialect[1]));
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		assertEquals("1 <a>", this.toky.substitute("{a} <a>"));
+	}
+
+	@Test
+	public void thatArgumentDelimitersFromAnAdditionalDialectResultInException () {
+		this.toky.withAdditionalTokenDelimiters("<%", "%>");
+		for (String character : new String[] { "<", "%", ">" }) {
+			try {
+				this.toky.withArgumentStart(character);
+				fail(String.format("expected IllegalArgumentException for '%s'", character));
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		try {
+			this.toky.withArgumentEnd("%");
+			fail("expected IllegalArgumentException for '%'");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			this.toky.withArgumentDelimiter(">");
+			fail("expected IllegalArgumentException for '>'");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals("1+2", this.toky.substitute("<%concat(1,2)%>"));
+	}
+
+	@Test
+	public void thatTheFirstDialectIsValidatedTheSameWay () {
+		this.toky.withAdditionalTokenDelimiters("${", "}");
+		try {
+			this.toky.withTokenStart("$(");
+			fail("expected IllegalArgumentException for '$('");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			this.toky.withTokenEnd(",}");
+			fail("expected IllegalArgumentException for ',}'");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			this.toky.withTokenStart("${");
+			fail("expected IllegalArgumentException for '${'");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			this.toky.withArgumentStart("{");
+			fail("expected IllegalArgumentException for '{'");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals("1 1 1+2", this.toky.substitute("{a} ${a} {concat(1,2)}"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void thatAddingDialectsToAFrozenReplacerResultsInException () {
+		this.toky.freeze().withAdditionalTokenDelimiters("%", "%");
+	}
+
+	private void assertParseErrorAt (String toSubstitute, long position) {
+		try {
+			this.toky.substitute(toSubstitute);
+			fail(String.format("expected ParseException to be thrown for '%s'", toSubstitute));
+		} catch (ParseException expected) {
+			assertEquals(position, expected.getPosition());
+		}
+	}
+}
@@ -19,9 +19,16 @@ package de.marcelsauer.tokenreplacer;
 import static org.junit.Assert.assertEquals;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +38,8 @@ import org.junit.Test;
  */
 public class FileReadingTokyTest {
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	private TokenReplacer toky;
 
 	@Before
@@ -69,6 +78,126 @@ public class FileReadingTokyTest {
 		assertEquals(expectedResult, toky.substitute(contentToReplace));
 	}
 
+	@Test
+	public void thatFileContentIsReplacedCorrectlyWithStatelessGenerator() {
+		this.toky.register("token5", new StatelessGenerator() {
+
+			@Override
+			public String generate(String[] args) {
+				StringBuilder result = new StringBuilder();
+				for (String s : args) {
+					result.append(s);
+				}
+				return result.toString();
+			}
+		});
+		String expected = getContents(getClass().getClassLoader().getResourceAsStream("sampleExpectedOutput_en.txt"));
+		String contentToReplace = getContents(getClass().getClassLoader().getResourceAsStream("sampleInput_en.txt"));
+		assertEquals(expected, toky.substitute(contentToReplace));
+	}
+
+	@Test
+	public void thatStreamedFileContentIsReplacedCorrectly() throws IOException {
+		InputStream input = getClass().getClassLoader().getResourceAsStream("sampleInput_en.txt");
+		InputStream expected = getClass().getClassLoader().getResourceAsStream("sampleExpectedOutput_en.txt");
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		toky.substitute(input, result, UTF_8);
+		assertEquals(getContents(expected), getContents(new ByteArrayInputStream(result.toByteArray())));
+	}
+
+	@Test
+	public void thatFileToFileSubstitutionWorks() throws IOException {
+		InputStream expected = getClass().getClassLoader().getResourceAsStream("sampleExpectedOutput_en.txt");
+		File in = copyToTempFile(getClass().getClassLoader().getResourceAsStream("sampleInput_en.txt"));
+		File out = tempFile();
+		toky.substitute(in, out, UTF_8);
+		assertEquals(getContents(expected), getContents(new FileInputStream(out)));
+	}
+
+	@Test
+	public void thatTokensSpanningMappedRegionsWork() throws IOException {
+		FiniteStateMachineTokenReplacer replacer = new FiniteStateMachineTokenReplacer();
+		replacer.register("token1", "\u00e4\u20ac");
+		replacer.register("token5", new StatelessGenerator() {
+
+			@Override
+			public String generate(String[] args) {
+				return args[0] + "|" + args[1];
+			}
+		});
+		String content = "\u00fc\u2603 {token1} \u20ac{token5(\u00e4,\u2603\u2603)}\u00df";
+		String expected = "\u00fc\u2603 \u00e4\u20ac \u20ac\u00e4|\u2603\u2603\u00df";
+		File in = tempFile();
+		write(in, content, UTF_8);
+		for (int regionSize = 1; regionSize < 10; regionSize++) {
+			File out = tempFile();
+			replacer.substitute(in, out, UTF_8, regionSize);
+			assertEquals(expected, read(out, UTF_8));
+		}
+	}
+
+	@Test
+	public void thatFileToFileSubstitutionWorksForMultiByteCharsets() throws IOException {
+		Charset utf16 = Charset.forName("UTF-16");
+		File in = tempFile();
+		write(in, "a {token1} b {token5(1,2)}", utf16);
+		File out = tempFile();
+		toky.substitute(in, out, utf16);
+		assertEquals("a 1 b 12", read(out, utf16));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatSameInputAndOutputFileResultsInException() throws IOException {
+		File file = tempFile();
+		toky.substitute(file, file, UTF_8);
+	}
+
+	private File tempFile() throws IOException {
+		File file = File.createTempFile("toky", ".txt");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private File copyToTempFile(InputStream in) throws IOException {
+		File file = tempFile();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			out.close();
+			in.close();
+		}
+		return file;
+	}
+
+	private void write(File file, String content, Charset charset) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes(charset.name()));
+		} finally {
+			out.close();
+		}
+	}
+
+	private String read(File file, Charset charset) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return new String(content.toByteArray(), charset.name());
+	}
+
 	private String getContents(InputStream in) {
 		StringBuilder contents = new StringBuilder();
 		try {
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class FrozenTokenReplacerTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 5000;
+	private static final int TOKENS = 100;
+
+	@Test
+	public void thatFrozenReplacerSubstitutesLikeTheOriginal () {
+		TokenReplacer toky = new Toky().register("a", "1").withTokenStart("[").withTokenEnd("]").ignoreMissingValues();
+		TokenReplacer frozen = toky.freeze();
+		assertEquals("1 [b]", frozen.substitute("[a] [b]"));
+		assertEquals("1 [b]", frozen.compile("[a] [b]").render());
+	}
+
+	@Test
+	public void thatLaterChangesDoNotAffectTheFrozenReplacer () {
+		Token token = new Token("a").replacedBy("1");
+		TokenReplacer toky = new Toky().register(token);
+		TokenReplacer frozen = toky.freeze();
+		toky.register("a", "2").withTokenStart("[");
+		token.replacedBy("3");
+		assertEquals("1", frozen.substitute("{a}"));
+	}
+
+	@Test
+	public void thatGeneratorsOfAFrozenReplacerCanBeCalledConcurrently () throws Exception {
+		final TokenReplacer frozen = new Toky().register("concat", new Generator() {
+
+			private String[] args;
+
+			@Override
+			public void inject (String[] args) {
+				this.args = args;
+			}
+
+			@Override
+			public String generate () {
+				Thread.yield();
+				return this.args[0] + "-" + this.args[1];
+			}
+		}).freeze();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				results.add(executor.submit(new Callable<Integer>() {
+
+					@Override
+					public Integer call () throws Exception {
+						for (int i = 0; i < ITERATIONS; i++) {
+							assertEquals(thread + "-" + i, frozen.substitute("{concat(" + thread + "," + i + ")}"));
+						}
+						return ITERATIONS;
+					}
+				}));
+			}
+			for (Future<Integer> result : results) {
+				assertEquals(Integer.valueOf(ITERATIONS), result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void thatRegisteringOnAFrozenReplacerResultsInException () {
+		new Toky().freeze().register("a", "1");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void thatChangingDelimitersOnAFrozenReplacerResultsInException () {
+		new Toky().freeze().withTokenStart("[");
+	}
+
+	@Test
+	public void thatFrozenReplacerCanBeSharedBetweenThreads () throws Exception {
+		TokenReplacer toky = new Toky();
+		for (int i = 0; i < TOKENS; i++) {
+			toky.register("token" + i, "value" + i);
+		}
+		final TokenReplacer frozen = toky.freeze();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				results.add(executor.submit(new Callable<Integer>() {
+
+					@Override
+					public Integer call () throws Exception {
+						start.await();
+						int checked = 0;
+						for (int i = 0; i < ITERATIONS; i++) {
+							int token = (thread * ITERATIONS + i) % TOKENS;
+							String template = "x {token" + token + "} y {token" + (TOKENS - 1 - token) + "}";
+							String expected = "x value" + token + " y value" + (TOKENS - 1 - token);
+							assertEquals(expected, frozen.substitute(template));
+							assertEquals(expected, frozen.compile(template).render());
+							checked++;
+						}
+						return checked;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Integer> result : results) {
+				assertEquals(Integer.valueOf(ITERATIONS), result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
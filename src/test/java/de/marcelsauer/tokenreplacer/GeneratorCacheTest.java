@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class GeneratorCacheTest {
+
+	private final TokenReplacer toky = new Toky();
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Before
+	public void setUp () {
+		this.toky.register("price", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return "price" + (args.length > 0 ? args[0] : "") + "#" + GeneratorCacheTest.this.calls.incrementAndGet();
+			}
+		});
+	}
+
+	@Test
+	public void thatValuesAreCachedAcrossCalls () {
+		LruGeneratorCache cache = new LruGeneratorCache(10);
+		this.toky.withGeneratorCache(cache);
+		assertEquals("price1#1 price2#2", this.toky.substitute("{price(1)} {price(2)}"));
+		assertEquals("price1#1 price2#2 price#3", this.toky.substitute("{price(1)} {price(2)} {price}"));
+		assertEquals("price2#2", this.toky.compile("{price(2)}").render());
+		GeneratorCacheStats stats = cache.getStats();
+		assertEquals(3, stats.getSize());
+		assertEquals(3, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(0.5, stats.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void thatLeastRecentlyUsedValueIsEvicted () {
+		LruGeneratorCache cache = new LruGeneratorCache(2);
+		this.toky.withGeneratorCache(cache);
+		this.toky.substitute("{price(1)} {price(2)} {price(1)} {price(3)}");
+		assertEquals(1, cache.getStats().getEvictionCount());
+		assertNull(cache.get("price", new String[] { "2" }));
+		assertEquals("price1#1", cache.get("price", new String[] { "1" }));
+		assertEquals("price3#3", cache.get("price", new String[] { "3" }));
+	}
+
+	@Test
+	public void thatValuesExpire () throws Exception {
+		LruGeneratorCache cache = new LruGeneratorCache(10).withTimeToLive(20, TimeUnit.MILLISECONDS)
+				.withTimeToLive("other", 1, TimeUnit.HOURS);
+		this.toky.withGeneratorCache(cache);
+		assertEquals("price1#1", this.toky.substitute("{price(1)}"));
+		Thread.sleep(50);
+		assertEquals("price1#2", this.toky.substitute("{price(1)}"));
+		assertEquals(1, cache.getStats().getExpirationCount());
+	}
+
+	@Test
+	public void thatTokenWithoutTimeToLiveIsNotCached () {
+		this.toky.withGeneratorCache(new LruGeneratorCache(10).withTimeToLive("price", 0, TimeUnit.SECONDS));
+		assertEquals("price#1 price#2", this.toky.substitute("{price} {price}"));
+	}
+
+	@Test
+	public void thatStaticValuesAreNotCached () {
+		LruGeneratorCache cache = new LruGeneratorCache(10);
+		this.toky.register("static", "value").withGeneratorCache(cache);
+		assertEquals("value value", this.toky.substitute("{static} {static}"));
+		assertEquals(0, cache.getStats().getSize());
+		assertEquals(0, cache.getStats().getMissCount());
+	}
+
+	@Test
+	public void thatFrozenReplacerSharesTheCache () {
+		LruGeneratorCache cache = new LruGeneratorCache(10);
+		this.toky.withGeneratorCache(cache);
+		assertEquals("price1#1", this.toky.substitute("{price(1)}"));
+		assertEquals("price1#1", this.toky.freeze().substitute("{price(1)}"));
+		this.toky.withoutGeneratorCache();
+		assertEquals("price1#2", this.toky.substitute("{price(1)}"));
+	}
+
+	@Test
+	public void thatPerCallCachingRespectsArguments () {
+		this.toky.enableGeneratorCaching();
+		assertEquals("price1#1 price2#2 price1#1", this.toky.substitute("{price(1)} {price(2)} {price(1)}"));
+	}
+
+	@Test
+	public void thatGeneratorReturningNullIsCalledOncePerOccurrence () {
+		final AtomicInteger nullCalls = new AtomicInteger();
+		this.toky.register("n", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				nullCalls.incrementAndGet();
+				return null;
+			}
+		}).withGeneratorCache(new LruGeneratorCache(10));
+		assertEquals("null", this.toky.substitute("{n}"));
+		assertEquals(1, nullCalls.get());
+	}
+
+	@Test
+	public void thatRegisteringATokenAgainInvalidatesItsValues () {
+		LruGeneratorCache cache = new LruGeneratorCache(10);
+		this.toky.withGeneratorCache(cache);
+		this.toky.register("other", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return "other";
+			}
+		});
+		assertEquals("price1#1 price2#2 other", this.toky.substitute("{price(1)} {price(2)} {other}"));
+		this.toky.register("price", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return "new" + args[0];
+			}
+		});
+		assertEquals("new1 new2 other", this.toky.substitute("{price(1)} {price(2)} {other}"));
+		assertEquals(3, cache.getStats().getSize());
+		cache.invalidate("price");
+		cache.invalidate("unknown");
+		assertEquals(1, cache.getStats().getSize());
+		assertEquals("other", cache.get("other", new String[0]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatInvalidMaximumSizeResultsInException () {
+		new LruGeneratorCache(0);
+	}
+}
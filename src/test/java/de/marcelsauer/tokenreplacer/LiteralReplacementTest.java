@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author msauer
+ */
+public class LiteralReplacementTest {
+
+	private final TokenReplacer toky = new Toky();
+
+	@Test
+	public void thatTokenNamesAreReplacedWithoutDelimiters () {
+		this.toky.register("ACME-1", "Anvil").register("ACME-12", "Rocket");
+		assertEquals("Anvil, Rocket, Rocket3, {Anvil}", this.toky.substituteLiterals("ACME-1, ACME-12, ACME-123, {ACME-1}"));
+		assertEquals("", this.toky.substituteLiterals(""));
+		assertEquals("nothing to do", this.toky.substituteLiterals("nothing to do"));
+		assertEquals(null, this.toky.substituteLiterals(null));
+	}
+
+	@Test
+	public void thatTheLeftmostLongestMatchWins () {
+		this.toky.register("he", "1").register("she", "2").register("hers", "3").register("his", "4");
+		assertEquals("u2rs", this.toky.substituteLiterals("ushers"));
+		assertEquals("3 4 2 1", this.toky.substituteLiterals("hers his she he"));
+		this.toky.register("a", "x").register("ab", "y").register("abc", "z").register("bcd", "w");
+		assertEquals("yd zz", this.toky.substituteLiterals("abd abcabc"));
+	}
+
+	@Test
+	public void thatNewlyRegisteredTokensAreFound () {
+		this.toky.register("one", "1");
+		assertEquals("1 two", this.toky.substituteLiterals("one two"));
+		this.toky.register("two", "2");
+		assertEquals("1 2", this.toky.substituteLiterals("one two"));
+		assertEquals("1 2", this.toky.freeze().substituteLiterals("one two"));
+	}
+
+	@Test
+	public void thatGeneratorsAreCalledForEveryMatch () throws IOException {
+		Generator generator = Mockito.mock(Generator.class);
+		Mockito.when(generator.generate()).thenReturn("value");
+		this.toky.register("KEY", generator);
+		StringBuilder result = new StringBuilder();
+		this.toky.substituteLiteralsTo(new StringBuilder("KEY KEY KEY"), result);
+		assertEquals("value value value", result.toString());
+		verify(generator, times(3)).generate();
+
+		this.toky.enableGeneratorCaching();
+		assertEquals("value value", this.toky.substituteLiterals("KEY KEY"));
+		verify(generator, times(4)).generate();
+	}
+
+	@Test
+	public void thatResultIsTheSameAsReplacingOneKeyAfterTheOther () {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			TokenReplacer replacer = new Toky();
+			List<String> keys = new ArrayList<String>();
+			for (int i = 0; i < 1 + random.nextInt(8); i++) {
+				String key = randomText(random, 1 + random.nextInt(4));
+				keys.add(key);
+				replacer.register(key, "<" + key.toUpperCase() + ">");
+			}
+			String text = randomText(random, random.nextInt(40));
+			assertEquals(text, leftmostLongest(text, keys), replacer.substituteLiterals(text));
+		}
+	}
+
+	private String randomText (Random random, int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append((char) ('a' + random.nextInt(3)));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * tries every key at every position, the slow way
+	 */
+	private String leftmostLongest (String text, List<String> keys) {
+		StringBuilder result = new StringBuilder();
+		int i = 0;
+		while (i < text.length()) {
+			String longest = null;
+			for (String key : keys) {
+				if (text.startsWith(key, i) && (longest == null || key.length() > longest.length())) {
+					longest = key;
+				}
+			}
+			if (longest == null) {
+				result.append(text.charAt(i++));
+			} else {
+				result.append('<').append(longest.toUpperCase()).append('>');
+				i += longest.length();
+			}
+		}
+		return result.toString();
+	}
+}
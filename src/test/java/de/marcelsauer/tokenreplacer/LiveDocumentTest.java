@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class LiveDocumentTest {
+
+	private static final String TEMPLATE = "load {load}, users {users}, load again {load}, {time}";
+
+	private final AtomicInteger generated = new AtomicInteger();
+	private Toky toky;
+
+	@Before
+	public void setUp () {
+		this.toky = new Toky();
+		this.toky.register("load", "0.5").register("users", "12");
+		this.toky.register("time", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return "t" + LiveDocumentTest.this.generated.incrementAndGet();
+			}
+		});
+	}
+
+	@Test
+	public void thatDocumentIsRenderedLikeSubstitute () throws Exception {
+		LiveDocument document = this.toky.compile(TEMPLATE).newLiveDocument();
+		assertEquals("load 0.5, users 12, load again 0.5, t1", document.getText());
+		assertEquals(document.getText().length(), document.getLength());
+		StringWriter out = new StringWriter();
+		document.writeTo(out);
+		assertEquals(document.getText(), out.toString());
+	}
+
+	@Test
+	public void thatOnlyChangedTokensAreRenderedAgain () {
+		LiveDocument document = this.toky.compile(TEMPLATE).newLiveDocument();
+		assertEquals(0, document.refresh());
+		this.toky.register("load", "0.7");
+		assertEquals(1, document.refresh());
+		assertEquals("load 0.7, users 12, load again 0.7, t1", document.getText());
+		assertEquals(document.getText().length(), document.getLength());
+		// the generator of the unchanged token was not called again
+		assertEquals(1, this.generated.get());
+	}
+
+	@Test
+	public void thatValuesChangedInPlaceAreRenderedAgain () {
+		Token users = new Token("users").replacedBy("12");
+		this.toky.register(users);
+		LiveDocument document = this.toky.compile(TEMPLATE).newLiveDocument();
+		users.replacedBy("13");
+		assertEquals(1, document.refresh());
+		assertEquals("load 0.5, users 13, load again 0.5, t1", document.getText());
+	}
+
+	@Test
+	public void thatGeneratorsAreCalledAgainOnRequest () {
+		LiveDocument document = this.toky.compile(TEMPLATE).newLiveDocument();
+		assertTrue(document.refresh("time"));
+		assertFalse(document.refresh("unknown"));
+		assertEquals("load 0.5, users 12, load again 0.5, t2", document.getText());
+	}
+
+	@Test
+	public void thatMissingTokensAreRenderedOnceRegistered () {
+		this.toky.ignoreMissingValues();
+		LiveDocument document = this.toky.compile("a {missing} b").newLiveDocument();
+		assertEquals("a {missing} b", document.getText());
+		this.toky.register("missing", "found");
+		assertEquals(1, document.refresh());
+		assertEquals("a found b", document.getText());
+	}
+
+	@Test
+	public void thatUnchangedMissingTokensAreNotRenderedAgain () {
+		this.toky.ignoreMissingValues();
+		LiveDocument document = this.toky.compile("a {missing} b").newLiveDocument();
+		this.toky.doNotIgnoreMissingValues().register("other", "x");
+		assertEquals(0, document.refresh());
+		this.toky.register("missing", "found");
+		assertEquals(1, document.refresh());
+		assertEquals("a found b", document.getText());
+	}
+
+	@Test
+	public void thatDictionaryValuesAreRenderedAgainWhenTheDictionaryChanged () {
+		CompactDictionary dictionary = new CompactDictionary().put("city", "Berlin");
+		this.toky.withDictionary(dictionary);
+		LiveDocument document = this.toky.compile("{users} in {city}").newLiveDocument();
+		assertEquals(0, document.refresh());
+		dictionary.put("city", "Köln");
+		assertEquals(1, document.refresh());
+		assertEquals("12 in Köln", document.getText());
+		this.toky.withDictionary(new CompactDictionary().put("city", "Bonn"));
+		assertEquals(1, document.refresh());
+		assertEquals("12 in Bonn", document.getText());
+		assertEquals(0, document.refresh());
+	}
+
+	@Test
+	public void thatNestedValuesAreRenderedAgainWhenAnyTokenChanged () {
+		this.toky.register("greeting", "hello {name}").register("name", "joe").enableNestedExpansion(4);
+		LiveDocument document = this.toky.compile("{greeting}!").newLiveDocument();
+		assertEquals("hello joe!", document.getText());
+		assertEquals(0, document.refresh());
+		this.toky.register("name", "ann");
+		assertEquals(1, document.refresh());
+		assertEquals("hello ann!", document.getText());
+	}
+}
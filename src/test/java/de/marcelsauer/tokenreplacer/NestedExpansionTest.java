@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class NestedExpansionTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final TokenReplacer toky = new Toky();
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Test
+	public void thatNestedValuesAreNotExpandedByDefault () {
+		this.toky.register("greeting", "Hello {name}").register("name", "Joe");
+		assertEquals("Hello {name}!", this.toky.substitute("{greeting}!"));
+	}
+
+	@Test
+	public void thatNestedValuesAreExpandedRecursively () {
+		this.toky.register("greeting", "{hello} {name}").register("hello", "Hello").register("name", "{first} {last}")
+				.register("first", "Joe").register("last", "Doe").enableNestedExpansion(8);
+		String template = "{greeting}! {name}";
+		String expected = "Hello Joe Doe! Joe Doe";
+		assertEquals(expected, this.toky.substitute(template));
+		assertEquals(expected, this.toky.compile(template).render());
+		assertEquals(expected, this.toky.newSubstitutor().substitute(template));
+		assertEquals(expected, new String(this.toky.substitute(template.getBytes(UTF_8), UTF_8), UTF_8));
+		assertEquals(expected, this.toky.freeze().substitute(template));
+	}
+
+	@Test
+	public void thatGeneratorArgumentsWorkInNestedValues () {
+		this.toky.register("sum", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return String.valueOf(Integer.parseInt(args[0]) + Integer.parseInt(args[1]));
+			}
+		}).register("total", "total {sum(1,2)}").enableNestedExpansion(2);
+		assertEquals("total 3", this.toky.substitute("{total}"));
+	}
+
+	@Test
+	public void thatExpandedValuesAreRememberedWithinACall () {
+		this.toky.register("counter", countingGenerator()).register("static", "[{counter}]").enableNestedExpansion(2);
+		// the generator is called for every occurrence without generator caching
+		assertEquals("[1] [2]", this.toky.substitute("{static} {static}"));
+		this.toky.enableGeneratorCaching();
+		assertEquals("[3] [3]", this.toky.substitute("{static} {static}"));
+		assertEquals("[4] [4]", this.toky.substitute("{static} {static}"));
+	}
+
+	@Test
+	public void thatGeneratorValuesAreNotRememberedWithoutCachingOnAnyPath () throws Exception {
+		this.toky.register("counter", countingGenerator()).register("outer", "[{counter}]").enableNestedExpansion(5);
+		assertEquals("[1][2][3]", this.toky.substitute("{outer}{outer}{outer}"));
+		assertEquals("[4][5][6]", this.toky.newSubstitutor().substitute("{outer}{outer}{outer}"));
+		StringBuilder toSubstitute = new StringBuilder();
+		for (int i = 0; i < 300000; i++) {
+			toSubstitute.append("{outer}");
+		}
+		this.calls.set(0);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			this.toky.substituteParallel(toSubstitute.toString(), executor);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(300000, this.calls.get());
+	}
+
+	@Test
+	public void thatCyclesResultInException () {
+		this.toky.register("a", "x {b}").register("b", "y {c}").register("c", "{a}").register("self", "{self}")
+				.enableNestedExpansion(100);
+		try {
+			this.toky.substitute("start {a}");
+			fail("expected CyclicTokenException");
+		} catch (CyclicTokenException expected) {
+			assertEquals(Arrays.asList("a", "b", "c", "a"), expected.getPath());
+			assertEquals("the value of token 'a' contains itself: a -> b -> c -> a", expected.getMessage());
+		}
+		try {
+			this.toky.substitute("{self}");
+			fail("expected CyclicTokenException");
+		} catch (CyclicTokenException expected) {
+			assertEquals(Arrays.asList("self", "self"), expected.getPath());
+		}
+	}
+
+	@Test
+	public void thatTheDepthIsLimited () {
+		this.toky.register("level1", "{level2}").register("level2", "{level3}").register("level3", "end");
+		this.toky.enableNestedExpansion(2);
+		assertEquals("end", this.toky.substitute("{level1}"));
+		this.toky.enableNestedExpansion(1);
+		try {
+			this.toky.substitute("{level1}");
+			fail("expected NestedExpansionException");
+		} catch (NestedExpansionException expected) {
+			assertEquals(Arrays.asList("level1", "level2"), expected.getPath());
+		}
+		this.toky.disableNestedExpansion();
+		assertEquals("{level2}", this.toky.substitute("{level1}"));
+	}
+
+	@Test
+	public void thatSubstitutorCanBeReusedAfterACycle () {
+		this.toky.register("a", "{a}").register("b", "{c}").register("c", "c").enableNestedExpansion(4);
+		Substitutor substitutor = this.toky.newSubstitutor();
+		try {
+			substitutor.substitute("{a}");
+			fail("expected CyclicTokenException");
+		} catch (CyclicTokenException expected) {
+			// expected
+		}
+		assertEquals("c", substitutor.substitute("{b}"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thatInvalidDepthResultsInException () {
+		this.toky.enableNestedExpansion(0);
+	}
+
+	private StatelessGenerator countingGenerator () {
+		return new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return String.valueOf(NestedExpansionTest.this.calls.incrementAndGet());
+			}
+		};
+	}
+}
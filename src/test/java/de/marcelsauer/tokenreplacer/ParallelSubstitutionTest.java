@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class ParallelSubstitutionTest {
+
+	private static final int CHUNK_SIZE = 8;
+
+	private final FiniteStateMachineTokenReplacer replacer = new FiniteStateMachineTokenReplacer();
+	private ExecutorService executor;
+
+	@Before
+	public void setUp () {
+		this.executor = Executors.newFixedThreadPool(4);
+		this.replacer.register("static", "static value");
+		this.replacer.register("sum", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				int sum = 0;
+				for (String arg : args) {
+					sum += Integer.parseInt(arg);
+				}
+				return String.valueOf(sum);
+			}
+		});
+	}
+
+	@After
+	public void tearDown () {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void thatParallelResultIsSameAsSequentialResult () {
+		StringBuilder toSubstitute = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			toSubstitute.append("line ").append(i).append(" {static} (}) {sum(").append(i).append(",1)}\n");
+		}
+		String expected = this.replacer.substitute(toSubstitute.toString());
+		assertEquals(expected, this.replacer.substituteParallel(toSubstitute.toString(), this.executor, CHUNK_SIZE));
+		assertEquals(expected, new Toky(this.replacer).substituteParallel(toSubstitute.toString(), this.executor));
+	}
+
+	@Test
+	public void thatSmallAndEmptyInputsWork () {
+		assertEquals(null, this.replacer.substituteParallel(null, this.executor, CHUNK_SIZE));
+		assertEquals("", this.replacer.substituteParallel("", this.executor, CHUNK_SIZE));
+		assertEquals("static value", this.replacer.substituteParallel("{static}", this.executor, CHUNK_SIZE));
+	}
+
+	@Test
+	public void thatParseErrorsAreReportedAtTheirGlobalPosition () {
+		String[] invalid = { "0123456789012345678901234567890123456789 {static {static}",
+				"0123456789012345678901234567890123456789 {static} {sum(1,2} end",
+				"0123456789012345678901234567890123456789 {static} {static} {unfinished" };
+		for (String toSubstitute : invalid) {
+			long expected = parseErrorPosition(toSubstitute, false);
+			assertEquals(expected, parseErrorPosition(toSubstitute, true));
+		}
+	}
+
+	@Test
+	public void thatCachedGeneratorValuesAreSharedBetweenChunks () {
+		final AtomicInteger counter = new AtomicInteger();
+		this.replacer.register("counter", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return String.valueOf(counter.incrementAndGet());
+			}
+		}).enableGeneratorCaching();
+		StringBuilder toSubstitute = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			toSubstitute.append("..........{counter}");
+		}
+		String result = this.replacer.substituteParallel(toSubstitute.toString(), this.executor, CHUNK_SIZE);
+		String value = result.substring(10, result.indexOf('.', 10));
+		assertEquals(toSubstitute.toString().replace("{counter}", value), result);
+	}
+
+	private long parseErrorPosition (String toSubstitute, boolean parallel) {
+		try {
+			if (parallel) {
+				this.replacer.substituteParallel(toSubstitute, this.executor, CHUNK_SIZE);
+			} else {
+				this.replacer.substitute(toSubstitute);
+			}
+			fail(String.format("expected ParseException to be thrown for '%s'", toSubstitute));
+			return -1;
+		} catch (ParseException expected) {
+			return expected.getPosition();
+		}
+	}
+}
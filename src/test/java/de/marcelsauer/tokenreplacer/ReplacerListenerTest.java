@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author msauer
+ */
+public class ReplacerListenerTest {
+
+	private final TokenReplacer toky = new Toky();
+
+	@Before
+	public void setUp () {
+		this.toky.register("static", "static value");
+		this.toky.register("sum", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				int sum = 0;
+				for (String arg : args) {
+					sum += Integer.parseInt(arg);
+				}
+				return String.valueOf(sum);
+			}
+		});
+	}
+
+	@Test
+	public void thatListenerIsNotifiedAboutSubstitutionsTokensAndGenerators () {
+		ReplacerListener listener = Mockito.mock(ReplacerListener.class);
+		this.toky.withListener(listener).ignoreMissingValues();
+		assertEquals("static value 3 {missing}", this.toky.substitute("{static} {sum(1,2)} {missing}"));
+		verify(listener).onSubstitution(eq(29L), eq(24L), anyLong());
+		verify(listener).onToken("static", true);
+		verify(listener).onToken("sum", true);
+		verify(listener).onToken("missing", false);
+		verify(listener).onGenerator(eq("sum"), anyLong());
+		verify(listener, never()).onGenerator(eq("static"), anyLong());
+	}
+
+	@Test
+	public void thatStaticTokensAreReportedWhenSubstitutingBytes () throws Exception {
+		ReplacerListener listener = Mockito.mock(ReplacerListener.class);
+		this.toky.withListener(listener);
+		Charset utf8 = Charset.forName("UTF-8");
+		byte[] template = "{static} {sum(1,2)}".getBytes(utf8);
+		assertEquals("static value 3", new String(this.toky.substitute(template, utf8), utf8));
+		this.toky.substitute(ByteBuffer.wrap(template), new ByteArrayOutputStream(), utf8);
+		verify(listener, Mockito.times(2)).onToken("static", true);
+		verify(listener, Mockito.times(2)).onToken("sum", true);
+	}
+
+	@Test
+	public void thatFailuresAreReported () {
+		ReplacerListener listener = Mockito.mock(ReplacerListener.class);
+		this.toky.withListener(listener);
+		assertFailure("{static");
+		assertFailure("{sum(1,)}");
+		assertFailure("{missing}");
+		verify(listener, Mockito.times(2)).onFailure(isA(ParseException.class));
+		verify(listener).onFailure(isA(NoValueOrGeneratorFoundException.class));
+		verify(listener, never()).onSubstitution(anyLong(), anyLong(), anyLong());
+	}
+
+	@Test
+	public void thatRemovedListenerIsNotNotified () {
+		ReplacerListener listener = Mockito.mock(ReplacerListener.class);
+		this.toky.withListener(listener).withoutListener();
+		this.toky.substitute("{static} {sum(1,2)}");
+		verifyZeroInteractions(listener);
+	}
+
+	@Test
+	public void thatJmxListenerExposesTheCounters () throws Exception {
+		JmxReplacerListener listener = new JmxReplacerListener();
+		this.toky.withListener(listener);
+		this.toky.substitute("{static} {sum(1,2)}");
+		this.toky.compile("{sum(3,4)}").render();
+		this.toky.newSubstitutor().substitute("{static}");
+		assertFailure("{static");
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("de.marcelsauer.tokenreplacer:type=Toky,name=ReplacerListenerTest");
+		server.registerMBean(listener, name);
+		try {
+			assertEquals(3L, server.getAttribute(name, "SubstitutionCount"));
+			assertEquals(1L, server.getAttribute(name, "ParseExceptionCount"));
+			assertEquals(2L, ((Map<?, ?>) server.getAttribute(name, "TokenCounts")).get("sum"));
+			assertEquals(2L, ((Map<?, ?>) server.getAttribute(name, "TokenCounts")).get("static"));
+			long[] histogram = (long[]) server.invoke(name, "getGeneratorLatencyHistogram", new Object[] { "sum" },
+					new String[] { String.class.getName() });
+			long calls = 0;
+			for (long bucket : histogram) {
+				calls += bucket;
+			}
+			assertEquals(2, calls);
+			assertEquals(histogram.length, listener.getGeneratorLatencyBuckets().length);
+
+			server.invoke(name, "reset", new Object[0], new String[0]);
+			assertEquals(0L, server.getAttribute(name, "SubstitutionCount"));
+			assertArrayEquals(new long[histogram.length], listener.getGeneratorLatencyHistogram("sum"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Test
+	public void thatJmxListenerDoesNotCountExpansionFailuresAsParseErrors () {
+		JmxReplacerListener listener = new JmxReplacerListener();
+		this.toky.withListener(listener).register("loop", "{loop}").enableNestedExpansion(4);
+		try {
+			this.toky.substitute("{loop}");
+			fail("expected CyclicTokenException");
+		} catch (CyclicTokenException expected) {
+			// expected
+		}
+		assertFailure("{static");
+		assertEquals(1, listener.getParseExceptionCount());
+		assertEquals(1, listener.getOtherFailureCount());
+		assertEquals(0, listener.getMissingValueCount());
+	}
+
+	private void assertFailure (String toSubstitute) {
+		try {
+			this.toky.substitute(toSubstitute);
+			fail(String.format("expected exception to be thrown for '%s'", toSubstitute));
+		} catch (ParseException expected) {
+			// expected
+		} catch (NoValueOrGeneratorFoundException expected) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class TemplateCacheTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 2000;
+
+	private final TokenReplacer toky = new Toky().register("a", "1").register("b", "2");
+
+	@Test
+	public void thatTemplatesAreCompiledOnlyOnce () {
+		this.toky.withTemplateCache(10);
+		assertEquals("1 2", this.toky.substitute("{a} {b}"));
+		assertEquals("1 2", this.toky.substitute("{a} {b}"));
+		assertSame(this.toky.compile("{a} {b}"), this.toky.compile("{a} {b}"));
+		assertEquals("x 2", this.toky.substitute("{0} {b}", "x"));
+		TemplateCacheStats stats = this.toky.getTemplateCacheStats();
+		assertEquals(3, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(2, stats.getSize());
+		assertEquals(14, stats.getChars());
+	}
+
+	@Test
+	public void thatValuesAreLookedUpOnEveryCall () {
+		this.toky.withTemplateCache(10);
+		assertEquals("1", this.toky.substitute("{a}"));
+		this.toky.register("a", "3");
+		assertEquals("3", this.toky.substitute("{a}"));
+	}
+
+	@Test
+	public void thatLeastRecentlyUsedTemplatesAreEvicted () {
+		this.toky.withTemplateCache(2);
+		CompiledTemplate first = this.toky.compile("{a}");
+		this.toky.compile("{b}");
+		this.toky.compile("{a}");
+		this.toky.compile("{a}{b}");
+		assertSame(first, this.toky.compile("{a}"));
+		assertEquals(1, this.toky.getTemplateCacheStats().getEvictionCount());
+		assertEquals(2, this.toky.getTemplateCacheStats().getSize());
+	}
+
+	@Test
+	public void thatTemplatesAreEvictedByLength () {
+		this.toky.withTemplateCache(100, 9);
+		this.toky.compile("{a} {b}");
+		this.toky.compile("{a}");
+		assertEquals(1, this.toky.getTemplateCacheStats().getEvictionCount());
+		this.toky.compile("{a} {b} {a} {b}");
+		assertEquals(1, this.toky.getTemplateCacheStats().getSize());
+		assertEquals(3, this.toky.getTemplateCacheStats().getChars());
+	}
+
+	@Test
+	public void thatChangingDelimitersInvalidatesTheCache () {
+		this.toky.withTemplateCache(10).register("f", new StatelessGenerator() {
+
+			@Override
+			public String generate (String[] args) {
+				return String.valueOf(args.length);
+			}
+		});
+		assertEquals("1 [a] 2", this.toky.substitute("{a} [a] {f(x,y)}"));
+		this.toky.withTokenStart("[").withTokenEnd("]");
+		assertEquals("{a} 1 {f(x,y)}", this.toky.substitute("{a} [a] {f(x,y)}"));
+		assertEquals("1", this.toky.substitute("[f(x;y)]"));
+		this.toky.withArgumentDelimiter(";");
+		assertEquals("2", this.toky.substitute("[f(x;y)]"));
+		assertEquals(2, this.toky.getTemplateCacheStats().getInvalidationCount());
+	}
+
+	@Test
+	public void thatCacheIsOptional () {
+		assertNull(this.toky.getTemplateCacheStats());
+		this.toky.withTemplateCache(10).withoutTemplateCache();
+		assertNull(this.toky.getTemplateCacheStats());
+		assertNotSame(this.toky.compile("{a}"), this.toky.compile("{a}"));
+	}
+
+	@Test
+	public void thatFrozenReplacerUsesItsOwnCacheFromSeveralThreads () throws Exception {
+		this.toky.withTemplateCache(16);
+		this.toky.substitute("{a}");
+		final TokenReplacer frozen = this.toky.freeze();
+		assertEquals(0, frozen.getTemplateCacheStats().getSize());
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				results.add(executor.submit(new Callable<Integer>() {
+
+					@Override
+					public Integer call () throws Exception {
+						for (int i = 0; i < ITERATIONS; i++) {
+							int template = (thread + i) % 32;
+							assertEquals(template + " 1", frozen.substitute(template + " {a}"));
+						}
+						return ITERATIONS;
+					}
+				}));
+			}
+			for (Future<Integer> result : results) {
+				assertEquals(Integer.valueOf(ITERATIONS), result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		TemplateCacheStats stats = frozen.getTemplateCacheStats();
+		assertEquals(THREADS * ITERATIONS, stats.getHitCount() + stats.getMissCount());
+		assertEquals(16, stats.getSize());
+	}
+}
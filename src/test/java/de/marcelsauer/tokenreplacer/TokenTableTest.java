@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.marcelsauer.tokenreplacer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * @author msauer
+ */
+public class TokenTableTest {
+
+	private final TokenTable table = new TokenTable();
+
+	@Test
+	public void thatTokensAreFoundByTheCharsOfTheirName () {
+		Token token = new Token("name").replacedBy("value");
+		this.table.put(token);
+		assertSame(token, this.table.get("name"));
+		assertSame(token, this.table.get(new StringBuilder("name")));
+		assertNull(this.table.get("nam"));
+		assertNull(this.table.get("names"));
+		assertNull(this.table.get("Name"));
+		assertNull(this.table.get(""));
+	}
+
+	@Test
+	public void thatNamesWithTheSameHashAreKeptApart () {
+		// "Aa" and "BB" have the same String#hashCode()
+		Token aa = new Token("Aa").replacedBy("1");
+		Token bb = new Token("BB").replacedBy("2");
+		this.table.put(aa);
+		this.table.put(bb);
+		assertSame(aa, this.table.get(new StringBuilder("Aa")));
+		assertSame(bb, this.table.get(new StringBuilder("BB")));
+		assertNull(this.table.get("AB"));
+	}
+
+	@Test
+	public void thatATokenWithTheSameNameIsReplaced () {
+		this.table.put(new Token("a").replacedBy("1"));
+		Token replacement = new Token("a").replacedBy("2");
+		this.table.put(replacement);
+		assertSame(replacement, this.table.get("a"));
+		assertEquals(1, this.table.size());
+	}
+
+	@Test
+	public void thatManyTokensCanBeRegistered () {
+		for (int i = 0; i < 10000; i++) {
+			this.table.put(new Token("token" + i).replacedBy(String.valueOf(i)));
+		}
+		this.table.put(new Token("äöü").replacedBy("umlauts"));
+		assertEquals(10001, this.table.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals("token" + i, this.table.get(new StringBuilder("token").append(i)).getToken());
+		}
+		assertEquals("äöü", this.table.get("äöü").getToken());
+		assertNull(this.table.get("token10000"));
+		assertNull(this.table.get("ä"));
+	}
+}
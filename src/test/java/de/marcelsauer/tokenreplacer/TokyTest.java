@@ -23,6 +23,15 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -110,6 +119,14 @@ public class TokyTest {
 		assertEquals("1 2 3", this.toky.substitute("{dynamicValue(1)} {dynamicValue(2)} {dynamicValue(3)}"));
 	}
 
+	@Test
+	public void thatStatelessGeneratorsWork () {
+		this.toky.register("sum", new SumGenerator());
+		this.toky.register(new Token("otherSum").replacedBy(new SumGenerator()));
+		assertEquals("3 7 0", this.toky.substitute("{sum(1,2)} {otherSum(3,4)} {sum}"));
+		assertEquals("3 7 0", this.toky.compile("{sum(1,2)} {otherSum(3,4)} {sum}").render());
+	}
+
 	@Test
 	public void thatEmptyArgumentsWork () {
 		this.toky.register(new Token("value").replacedBy(new DynamicGenerator()));
@@ -233,6 +250,92 @@ public class TokyTest {
 		assertParseException("{value(,,)}");
 	}
 
+	@Test
+	public void thatArgumentsAreSplitAtEveryDelimiter () {
+		this.toky.register(new Token("value").replacedBy(new DynamicGenerator()));
+		assertEquals("12", this.toky.withArgumentDelimiter("-").substitute("{value(1-2)}"));
+		// not treated as regular expressions
+		assertEquals("12", this.toky.withArgumentDelimiter(".").substitute("{value(1.2)}"));
+		assertEquals("12", this.toky.withArgumentDelimiter("|").substitute("{value(1|2)}"));
+		assertEquals("1,2", this.toky.substitute("{value(1,2)}"));
+		assertEquals("13", this.toky.substitute("{value(1||3)}"));
+		assertParseException("{value(|1)}");
+		assertParseException("{value(1|)}");
+	}
+
+	@Test
+	public void thatLiteralTextIsScannedTheSameWayForAllInputs () throws IOException {
+		this.toky.register("static", "static value");
+		StringBuilder longLiteral = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longLiteral.append("lorem ipsum ");
+		}
+		String toSubstitute = longLiteral + "{static}\0" + longLiteral + "\0{static}" + longLiteral;
+		String expected = longLiteral + "static value" + longLiteral + "static value" + longLiteral;
+		assertEquals(expected, this.toky.substitute(toSubstitute));
+		StringBuilder result = new StringBuilder();
+		this.toky.substituteTo(new StringBuilder(toSubstitute), result);
+		assertEquals(expected, result.toString());
+		assertEquals(expected, new String(this.toky.substitute(toSubstitute.getBytes("UTF-8"), Charset.forName("UTF-8")),
+				"UTF-8"));
+		assertEquals(expected, this.toky.compile(toSubstitute).render());
+	}
+
+	@Test
+	public void thatSubstitutingIntoAnAppendableWorks () throws IOException {
+		this.toky.register("static", "static value");
+		StringBuilder result = new StringBuilder("existing ");
+		this.toky.substituteTo(CharBuffer.wrap("a {static} b"), result);
+		assertEquals("existing a static value b", result.toString());
+	}
+
+	@Test
+	public void thatSubstitutingBytesWorks () throws IOException {
+		this.toky.register("static", "st\u00e4tic");
+		this.toky.register("sum", new SumGenerator());
+		this.toky.ignoreMissingValues();
+		String toSubstitute = "\u20ac {static} {sum(1,2)} {m\u00fcssing(\u00e5)} {static}";
+		String expected = "\u20ac st\u00e4tic 3 {m\u00fcssing(\u00e5)} st\u00e4tic";
+		for (String charsetName : new String[] {"UTF-8", "ISO-8859-15", "UTF-16"}) {
+			Charset charset = Charset.forName(charsetName);
+			byte[] result = this.toky.substitute(toSubstitute.getBytes(charsetName), charset);
+			assertEquals(expected, new String(result, charsetName));
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(256);
+			direct.put(toSubstitute.getBytes(charsetName)).flip();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			this.toky.substitute(direct, out, charset);
+			assertEquals(expected, new String(out.toByteArray(), charsetName));
+		}
+	}
+
+	@Test
+	public void thatStreamingWorksAcrossChunkBoundaries () throws IOException {
+		this.toky.register(new Token("dynamicValue").replacedBy(new DynamicGenerator()));
+		this.toky.register("static", "static value");
+		String toSubstitute = "a {static} b {dynamicValue(1,22,333)} c {dynamicValue()}";
+		StringWriter result = new StringWriter();
+		this.toky.substitute(new OneCharReader(toSubstitute), result);
+		assertEquals("a static value b 122333 c abc", result.toString());
+	}
+
+	@Test
+	public void thatMultiCharDelimitersCanSpanChunkBoundaries () throws IOException {
+		this.toky.register(new Token("dynamicValue").replacedBy(new DynamicGenerator()));
+		this.toky.register("static", "static value");
+		this.toky.withTokenStart("${").withTokenEnd("}}").withAdditionalTokenDelimiters("<%", "%>");
+		String toSubstitute = "$ a ${static}} } < % <%dynamicValue(1,22)%> $ {static} <";
+		StringWriter result = new StringWriter();
+		this.toky.substitute(new OneCharReader(toSubstitute), result);
+		assertEquals(this.toky.substitute(toSubstitute), result.toString());
+		assertEquals("$ a static value } < % 122 $ {static} <", result.toString());
+	}
+
+	@Test(expected = ParseException.class)
+	public void thatStreamingAnUnfinishedTokenResultsInException () throws IOException {
+		this.toky.substitute(new OneCharReader("abc {static(1,2"), new StringWriter());
+	}
+
 	private void assertSame (String inAndOut) {
 		assertEquals(inAndOut, this.toky.substitute(inAndOut));
 	}
@@ -246,6 +349,28 @@ public class TokyTest {
 		}
 	}
 
+	/**
+	 * hands out one char per read so every token spans several chunks
+	 */
+	private static class OneCharReader extends Reader {
+
+		private final StringReader delegate;
+
+		OneCharReader (String content) {
+			this.delegate = new StringReader(content);
+		}
+
+		@Override
+		public int read (char[] cbuf, int off, int len) throws IOException {
+			return this.delegate.read(cbuf, off, Math.min(len, 1));
+		}
+
+		@Override
+		public void close () {
+			this.delegate.close();
+		}
+	}
+
 	private class DynamicGenerator implements Generator {
 
 		private String[] args;
@@ -268,6 +393,18 @@ public class TokyTest {
 		}
 	}
 
+	private class SumGenerator implements StatelessGenerator {
+
+		@Override
+		public String generate (String[] args) {
+			int sum = 0;
+			for (String arg : args) {
+				sum += Integer.parseInt(arg);
+			}
+			return String.valueOf(sum);
+		}
+	}
+
 	private class NumberGenerator implements Generator {
 
 		@Override